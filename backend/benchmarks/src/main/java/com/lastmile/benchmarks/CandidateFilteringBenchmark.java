@@ -0,0 +1,83 @@
+package com.lastmile.benchmarks;
+
+import com.lastmile.driver.proto.DriverInfo;
+import com.lastmile.matching.index.DestinationCanonicalizer;
+import com.lastmile.matching.index.DriverAvailabilityIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of finding the eligible drivers for one ride request at a station: the token-indexed
+ * lookup findDriver uses against the linear scan with substring matching it replaced.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CandidateFilteringBenchmark {
+
+    private static final int REQUESTS = 1024;
+
+    @Param({ "10", "1000", "100000" })
+    public int drivers;
+
+    private DriverAvailabilityIndex index;
+    private List<DriverInfo> allDrivers;
+    private String[] stations;
+    private String[] destinations;
+    private long now;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        now = System.currentTimeMillis();
+        allDrivers = MatchingFixtures.drivers(drivers, now);
+        index = new DriverAvailabilityIndex();
+        for (DriverInfo driver : allDrivers) {
+            index.update(driver);
+        }
+
+        Random random = new Random(11);
+        stations = new String[REQUESTS];
+        destinations = new String[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            stations[i] = MatchingFixtures.station(random.nextInt(MatchingFixtures.STATION_COUNT));
+            destinations[i] = MatchingFixtures.destination(random);
+        }
+    }
+
+    @Benchmark
+    public int indexedLookup() {
+        int i = next();
+        Set<String> tokens = DestinationCanonicalizer.tokens(destinations[i]);
+        int eligible = 0;
+        for (DriverInfo driver : index.candidates(stations[i], tokens, now)) {
+            if (index.effectiveSeats(driver.getDriverId()) > 0) eligible++;
+        }
+        return eligible;
+    }
+
+    @Benchmark
+    public int linearScan() {
+        int i = next();
+        String riderDest = destinations[i].toLowerCase();
+        int eligible = 0;
+        for (DriverInfo driver : allDrivers) {
+            if (!driver.getMetroStationsList().contains(stations[i])) continue;
+            if (now - driver.getCurrentLocation().getTimestamp() >= DriverAvailabilityIndex.ACTIVE_THRESHOLD_MS) continue;
+            String driverDest = driver.getDestination().toLowerCase();
+            if (!(driverDest.contains(riderDest) || riderDest.contains(driverDest))) continue;
+            if (driver.getAvailableSeats() > 0) eligible++;
+        }
+        return eligible;
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (REQUESTS - 1);
+        return cursor;
+    }
+}
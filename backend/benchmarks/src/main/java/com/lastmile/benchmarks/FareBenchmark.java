@@ -0,0 +1,55 @@
+package com.lastmile.benchmarks;
+
+import com.lastmile.driver.proto.DriverInfo;
+import com.lastmile.matching.fare.FareEngine;
+import com.lastmile.matching.fare.HaversineDistanceModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of pricing a match: station lookup in the coordinate table, haversine distance and
+ * surge, with an in-memory queue depth standing in for Redis.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FareBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    public int drivers;
+
+    private FareEngine fareEngine;
+    private List<DriverInfo> driverList;
+    private String[] pickups;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        Map<String, Integer> queueDepth = new HashMap<>();
+        for (int i = 0; i < MatchingFixtures.STATION_COUNT; i++) {
+            queueDepth.put(MatchingFixtures.station(i), i);
+        }
+        fareEngine = new FareEngine(
+            MatchingFixtures.stationTable(),
+            new HaversineDistanceModel(1.3),
+            station -> Math.min(2.0, 1.0 + 0.1 * Math.max(0, queueDepth.getOrDefault(station, 0) - 5)),
+            20, 12, 30);
+
+        driverList = MatchingFixtures.drivers(drivers, System.currentTimeMillis());
+        pickups = new String[drivers];
+        for (int i = 0; i < drivers; i++) {
+            pickups[i] = driverList.get(i).getMetroStations(0);
+        }
+    }
+
+    @Benchmark
+    public int calculateFare() {
+        cursor = (cursor + 1) % drivers;
+        return fareEngine.calculate(pickups[cursor], driverList.get(cursor));
+    }
+}
@@ -0,0 +1,107 @@
+package com.lastmile.benchmarks;
+
+import com.lastmile.location.events.EventCodec;
+import com.lastmile.location.geo.DriverGeoIndex;
+import com.lastmile.location.ingest.LocationWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One driver location update against a real Redis: the old path (string hash with putAll
+ * and EXPIRE, GEOADD, ZADD and PUBLISH as five blocking calls) against LocationWriter's
+ * single pipeline of SET EX, GEOADD, ZADD and PUBLISH.
+ *
+ * Needs a Redis to write to, {@code -Dredis.host} / {@code -Dredis.port} (default
+ * localhost:6379); it writes under the real key names, so point it at a scratch instance.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LocationWriteBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    public int drivers;
+
+    private LettuceConnectionFactory connectionFactory;
+    private RedisTemplate<String, String> redisTemplate;
+    private LocationWriter locationWriter;
+    private LocationWriter.Fix[] fixes;
+    private int cursor;
+
+    @Setup
+    public void setUp() throws Exception {
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(
+            System.getProperty("redis.host", "localhost"), Integer.getInteger("redis.port", 6379)));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setValueSerializer(new StringRedisSerializer());
+        redisTemplate.setHashKeySerializer(new StringRedisSerializer());
+        redisTemplate.setHashValueSerializer(new StringRedisSerializer());
+        redisTemplate.afterPropertiesSet();
+
+        // Field-injected in the service; set it the way Spring would
+        locationWriter = new LocationWriter();
+        Field template = LocationWriter.class.getDeclaredField("redisTemplate");
+        template.setAccessible(true);
+        template.set(locationWriter, redisTemplate);
+
+        Random random = new Random(11);
+        long now = System.currentTimeMillis();
+        fixes = new LocationWriter.Fix[drivers];
+        for (int i = 0; i < drivers; i++) {
+            fixes[i] = new LocationWriter.Fix("bench-driver-" + i,
+                28.4 + random.nextDouble() * 0.5, 76.9 + random.nextDouble() * 0.6, now + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        connectionFactory.destroy();
+    }
+
+    @Benchmark
+    public void hashPath() {
+        cursor = (cursor + 1) % drivers;
+        LocationWriter.Fix fix = fixes[cursor];
+
+        String key = "location:" + fix.driverId();
+        Map<String, String> locationData = new HashMap<>();
+        locationData.put("latitude", String.valueOf(fix.latitude()));
+        locationData.put("longitude", String.valueOf(fix.longitude()));
+        locationData.put("timestamp", String.valueOf(fix.timestamp()));
+
+        redisTemplate.opsForHash().putAll(key, locationData);
+        redisTemplate.expire(key, Duration.ofHours(1));
+        redisTemplate.opsForGeo().add(DriverGeoIndex.GEO_KEY, new Point(fix.longitude(), fix.latitude()), fix.driverId());
+        redisTemplate.opsForZSet().add(DriverGeoIndex.SEEN_KEY, fix.driverId(), fix.timestamp());
+        byte[] channel = ("driver-location:" + fix.driverId()).getBytes(StandardCharsets.UTF_8);
+        byte[] payload = EventCodec.driverLocation(fix.latitude(), fix.longitude(), fix.timestamp());
+        redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(channel, payload));
+    }
+
+    @Benchmark
+    public void pipelinedPath() {
+        cursor = (cursor + 1) % drivers;
+        locationWriter.write(fixes[cursor]);
+    }
+}
@@ -0,0 +1,52 @@
+package com.lastmile.benchmarks;
+
+import com.lastmile.matching.events.EventCodec;
+import com.lastmile.matching.grpc.MatchStatusMessages;
+import com.lastmile.matching.proto.MonitorMatchStatusResponse;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of decoding a match-status channel payload into the MonitorMatchStatus stream update,
+ * cycling through N distinct messages.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MatchStatusParsingBenchmark {
+
+    private static final String[] STATUSES = { "PENDING", "MATCHED", "CONFIRMED", "CANCELLED" };
+
+    @Param({ "10", "1000", "100000" })
+    public int messages;
+
+    private byte[][] bodies;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(3);
+        bodies = new byte[messages][];
+        for (int i = 0; i < messages; i++) {
+            String status = STATUSES[random.nextInt(STATUSES.length)];
+            boolean hasDriver = !"PENDING".equals(status);
+            bodies[i] = EventCodec.matchStatus(
+                "match-" + i,
+                status,
+                hasDriver ? "driver-" + random.nextInt(10000) : null,
+                "CONFIRMED".equals(status) ? "trip-" + i : null,
+                hasDriver ? 30 + random.nextInt(200) : 0);
+        }
+    }
+
+    @Benchmark
+    public MonitorMatchStatusResponse parse() {
+        cursor = (cursor + 1) % messages;
+        return MatchStatusMessages.parse(bodies[cursor]);
+    }
+}
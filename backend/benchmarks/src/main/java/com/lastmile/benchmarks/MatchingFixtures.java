@@ -0,0 +1,102 @@
+package com.lastmile.benchmarks;
+
+import com.lastmile.driver.proto.DriverInfo;
+import com.lastmile.driver.proto.Location;
+import com.lastmile.matching.fare.StationCoordinateTable;
+import com.lastmile.matching.fare.StationCoordinates;
+import com.lastmile.matching.model.Match;
+
+import java.util.*;
+
+/**
+ * Deterministic drivers, matches and stations for the benchmarks, spread over a fixed city:
+ * {@link #STATION_COUNT} stations and {@link #AREAS} destination areas.
+ */
+final class MatchingFixtures {
+
+    static final int STATION_COUNT = 20;
+
+    static final String[] AREAS = {
+        "Koramangala", "Indiranagar", "Whitefield", "HSR Layout", "Jayanagar", "Hebbal",
+        "Electronic City", "Marathahalli", "Malleshwaram", "Yelahanka", "BTM Layout",
+        "Banashankari", "Rajajinagar", "Bellandur", "Sarjapur", "JP Nagar"
+    };
+
+    private static final String[] QUALIFIERS = { "", " 5th Block", " Main Road", ", near Metro", " Phase 2" };
+
+    private MatchingFixtures() {
+    }
+
+    static String station(int i) {
+        return "ST" + (i % STATION_COUNT + 1);
+    }
+
+    static double[] stationCoordinates(int i) {
+        return new double[] { 12.90 + (i % STATION_COUNT) * 0.01, 77.55 + (i % STATION_COUNT) * 0.01 };
+    }
+
+    static String destination(Random random) {
+        return AREAS[random.nextInt(AREAS.length)] + QUALIFIERS[random.nextInt(QUALIFIERS.length)];
+    }
+
+    /** Drivers serving two or three stations each, all with a fresh location fix. */
+    static List<DriverInfo> drivers(int count, long now) {
+        Random random = new Random(42);
+        List<DriverInfo> drivers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int first = random.nextInt(STATION_COUNT);
+            DriverInfo.Builder builder = DriverInfo.newBuilder()
+                .setDriverId("driver-" + i)
+                .setRouteId("route-" + i)
+                .setDestination(destination(random))
+                .setAvailableSeats(1 + random.nextInt(4))
+                .setRating(3.5 + random.nextDouble() * 1.5)
+                .setCurrentLocation(Location.newBuilder()
+                    .setLatitude(12.85 + random.nextDouble() * 0.25)
+                    .setLongitude(77.50 + random.nextDouble() * 0.25)
+                    .setTimestamp(now - random.nextInt(30000)));
+            for (int s = 0; s < 2 + random.nextInt(2); s++) {
+                builder.addMetroStations(station(first + s));
+            }
+            drivers.add(builder.build());
+        }
+        return drivers;
+    }
+
+    /** PENDING matches, oldest first. */
+    static List<Match> pendingMatches(int count, long now) {
+        Random random = new Random(7);
+        List<Match> matches = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Match match = new Match();
+            match.setMatchId("match-" + i);
+            match.setRiderId("rider-" + i);
+            match.setPickupStation(station(random.nextInt(STATION_COUNT)));
+            match.setDestination(destination(random));
+            match.setStatus("PENDING");
+            match.setTimestamp(now - (count - i) * 10L);
+            matches.add(match);
+        }
+        return matches;
+    }
+
+    /** Station table stand-in backed by a map instead of Redis. */
+    static StationCoordinateTable stationTable() {
+        Map<String, StationCoordinates> stations = new HashMap<>();
+        for (int i = 0; i < STATION_COUNT; i++) {
+            double[] coordinates = stationCoordinates(i);
+            stations.put(station(i), new StationCoordinates(station(i), coordinates[0], coordinates[1]));
+        }
+        return new StationCoordinateTable() {
+            @Override
+            public StationCoordinates get(String stationId) {
+                return stations.get(stationId);
+            }
+
+            @Override
+            public int size() {
+                return stations.size();
+            }
+        };
+    }
+}
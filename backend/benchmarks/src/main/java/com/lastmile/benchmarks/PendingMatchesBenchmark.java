@@ -0,0 +1,55 @@
+package com.lastmile.benchmarks;
+
+import com.lastmile.driver.proto.DriverInfo;
+import com.lastmile.matching.engine.PendingMatchSelector;
+import com.lastmile.matching.index.DestinationCanonicalizer;
+import com.lastmile.matching.model.Match;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link PendingMatchSelector#select}, the in-memory step of processPendingMatches
+ * that chooses which of N already-loaded PENDING requests a newly available driver takes.
+ *
+ * Only the selector is timed. The rest of a DRIVER_AVAILABLE evaluation is I/O and is not
+ * included: the getDriverInfo call, reading the station queues and loading the matches,
+ * the seat ledger reservation and the match write.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PendingMatchesBenchmark {
+
+    private static final int DRIVERS = 256;
+
+    @Param({ "10", "1000", "100000" })
+    public int matches;
+
+    private List<Match> pending;
+    private List<DriverInfo> drivers;
+    private List<Set<String>> driverTokens;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        long now = System.currentTimeMillis();
+        pending = MatchingFixtures.pendingMatches(matches, now);
+        drivers = MatchingFixtures.drivers(DRIVERS, now);
+        driverTokens = new ArrayList<>(DRIVERS);
+        for (DriverInfo driver : drivers) {
+            driverTokens.add(DestinationCanonicalizer.tokens(driver.getDestination()));
+        }
+    }
+
+    @Benchmark
+    public List<Match> selectForDriver() {
+        cursor = (cursor + 1) % DRIVERS;
+        DriverInfo driver = drivers.get(cursor);
+        return PendingMatchSelector.select(pending, driver, driverTokens.get(cursor), driver.getAvailableSeats());
+    }
+}
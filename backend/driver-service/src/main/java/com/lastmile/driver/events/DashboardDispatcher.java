@@ -0,0 +1,157 @@
+package com.lastmile.driver.events;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs driver dashboard updates off the Redis listener thread on the shared, bounded
+ * dashboardExecutor.
+ *
+ * Each open dashboard stream gets a {@link Lane}: its updates run one at a time, in arrival
+ * order, and at most {@code max-queued-per-stream} wait at once (newer ones are dropped
+ * beyond that). Closing the lane when the stream is cancelled discards whatever is still
+ * queued. Publishes {@code dashboard.dispatch.queue.depth}, {@code dashboard.dispatch.streams},
+ * {@code dashboard.dispatch.latency} (queued to started) and {@code dashboard.dispatch.dropped}.
+ */
+@Component
+public class DashboardDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(DashboardDispatcher.class);
+
+    // Updates one lane runs before yielding its worker to other streams
+    private static final int DRAIN_BATCH = 16;
+
+    @Value("${driver.dashboard.max-queued-per-stream:100}")
+    private int maxQueuedPerStream;
+
+    @Autowired
+    @Qualifier("dashboardExecutor")
+    private Executor executor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Set<Lane> lanes = ConcurrentHashMap.newKeySet();
+    private Timer latency;
+    private Counter dropped;
+
+    @jakarta.annotation.PostConstruct
+    public void init() {
+        Gauge.builder("dashboard.dispatch.queue.depth", queued, AtomicInteger::get)
+            .description("Dashboard updates waiting to run")
+            .register(meterRegistry);
+        Gauge.builder("dashboard.dispatch.streams", lanes, Set::size)
+            .description("Open driver dashboard streams")
+            .register(meterRegistry);
+        latency = Timer.builder("dashboard.dispatch.latency")
+            .description("Time from a dashboard update being queued to it starting")
+            .register(meterRegistry);
+        dropped = Counter.builder("dashboard.dispatch.dropped")
+            .description("Dashboard updates dropped because their stream was backed up")
+            .register(meterRegistry);
+    }
+
+    /** A serial queue for one dashboard stream. */
+    public Lane open(String driverId) {
+        Lane lane = new Lane(driverId);
+        lanes.add(lane);
+        return lane;
+    }
+
+    public final class Lane {
+        private final String driverId;
+        private final Queue<Task> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private Lane(String driverId) {
+            this.driverId = driverId;
+        }
+
+        public void submit(Runnable work) {
+            if (closed) return;
+            if (size.incrementAndGet() > maxQueuedPerStream) {
+                size.decrementAndGet();
+                dropped.increment();
+                log.warn("Dashboard stream for driver {} is backed up, dropping update", driverId);
+                return;
+            }
+            queued.incrementAndGet();
+            tasks.add(new Task(work, System.nanoTime()));
+            schedule();
+        }
+
+        /** Stops the lane; queued updates are discarded, a running one finishes. */
+        public void close() {
+            closed = true;
+            lanes.remove(this);
+            if (!scheduled.get()) discard();
+        }
+
+        private void schedule() {
+            if (!scheduled.compareAndSet(false, true)) return;
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                log.error("Dashboard executor saturated, dropping queued updates for driver {}", driverId);
+                dropped.increment(discard());
+            }
+        }
+
+        private void drain() {
+            int ran = 0;
+            Task task;
+            while (ran < DRAIN_BATCH && !closed && (task = tasks.poll()) != null) {
+                size.decrementAndGet();
+                queued.decrementAndGet();
+                ran++;
+                latency.record(System.nanoTime() - task.queuedAt(), TimeUnit.NANOSECONDS);
+                try {
+                    task.work().run();
+                } catch (Exception e) {
+                    log.error("Dashboard update failed for driver {}", driverId, e);
+                }
+            }
+            scheduled.set(false);
+            if (closed) {
+                discard();
+            } else if (!tasks.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private int discard() {
+            int discarded = 0;
+            while (tasks.poll() != null) {
+                size.decrementAndGet();
+                queued.decrementAndGet();
+                discarded++;
+            }
+            return discarded;
+        }
+    }
+
+    private record Task(Runnable work, long queuedAt) {
+    }
+}
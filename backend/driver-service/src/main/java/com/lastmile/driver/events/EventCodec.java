@@ -0,0 +1,39 @@
+package com.lastmile.driver.events;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.lastmile.driver.proto.DashboardDelta;
+import com.lastmile.events.proto.*;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes and decodes the protobuf payloads of the inter-service Redis channels this
+ * service uses (see events.proto). Decoders read straight from the message body bytes and return null for a
+ * payload that does not parse, so a listener can skip it.
+ */
+public final class EventCodec {
+
+    private EventCodec() {
+    }
+
+    /** For the driver-dashboard channel. */
+    public static byte[] dashboardDelta(DashboardDelta delta) {
+        return DriverDashboardEvent.newBuilder().setDelta(delta).build().toByteArray();
+    }
+
+    public static DriverDashboardEvent decodeDashboard(byte[] body) {
+        try {
+            return DriverDashboardEvent.parseFrom(body);
+        } catch (InvalidProtocolBufferException e) {
+            return null;
+        }
+    }
+
+    /** Publishes an encoded payload as-is, bypassing the template's string serializers. */
+    public static void publish(RedisOperations<?, ?> redis, String channel, byte[] payload) {
+        byte[] channelBytes = channel.getBytes(StandardCharsets.UTF_8);
+        redis.execute((RedisCallback<Long>) connection -> connection.publish(channelBytes, payload));
+    }
+}
@@ -1,5 +1,13 @@
 package com.lastmile.driver.grpc;
 
+import com.lastmile.driver.events.ChannelMultiplexer;
+import com.lastmile.driver.events.DashboardDispatcher;
+import com.lastmile.driver.events.EventCodec;
+import com.lastmile.driver.history.TripHistoryStore;
+import com.lastmile.driver.ledger.SeatLedger;
+import com.lastmile.events.proto.DriverDashboardEvent;
+import com.lastmile.events.proto.MatchRequestEvent;
+import com.lastmile.events.proto.TripUpdateEvent;
 import com.lastmile.driver.model.Driver;
 import com.lastmile.driver.proto.*;
 import com.lastmile.driver.repository.DriverRepository;
@@ -13,16 +21,22 @@ import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
 
 import java.time.LocalDate;
-import java.time.ZoneId;
-import java.time.Instant;
 import java.util.*;
 
 @GrpcService
 public class DriverGrpcService extends DriverServiceGrpc.DriverServiceImplBase {
     
     private static final Logger log = LoggerFactory.getLogger(DriverGrpcService.class);
+
+    // Enough for matching-service to catch up after a restart; older events are trimmed
+    private static final long DRIVER_EVENTS_MAXLEN = 100000;
     
     @Autowired
     private DriverRepository driverRepository;
@@ -31,10 +45,31 @@ public class DriverGrpcService extends DriverServiceGrpc.DriverServiceImplBase {
     private MongoTemplate mongoTemplate;
 
     @Autowired
-    private org.springframework.data.redis.listener.RedisMessageListenerContainer redisMessageListenerContainer;
+    private ChannelMultiplexer channels;
+
+    @Autowired
+    private DashboardDispatcher dashboardDispatcher;
 
     @Autowired
     private org.springframework.data.redis.core.StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private SeatLedger seatLedger;
+
+    @Autowired
+    private TripHistoryStore tripHistory;
+
+    private static final int DEFAULT_HISTORY_PAGE = 50;
+    private static final int MAX_HISTORY_PAGE = 200;
+
+    @jakarta.annotation.PostConstruct
+    public void init() {
+        // Serves listDrivers: station lookup plus the freshness filter
+        mongoTemplate.indexOps(Driver.class).ensureIndex(new org.springframework.data.mongodb.core.index.Index()
+                .on("metroStations", org.springframework.data.domain.Sort.Direction.ASC)
+                .on("currentLocation.timestamp", org.springframework.data.domain.Sort.Direction.DESC)
+                .named("stations_location_ts"));
+    }
     
     @Override
     public void registerRoute(RegisterRouteRequest request,
@@ -48,14 +83,18 @@ public class DriverGrpcService extends DriverServiceGrpc.DriverServiceImplBase {
             driverId, destination, availableSeats, metroStations.size());
         
         // Use atomic update to prevent overwriting location
+        String routeId = UUID.randomUUID().toString();
         Query query = new Query(Criteria.where("_id").is(driverId));
         Update update = new Update()
-            .set("routeId", UUID.randomUUID().toString())
+            .set("routeId", routeId)
             .set("destination", destination)
             .set("availableSeats", availableSeats)
             .set("metroStations", metroStations);
             
         mongoTemplate.upsert(query, update, Driver.class);
+
+        // New route, new seat ledger; matching reserves against it from now on
+        seatLedger.init(routeId, availableSeats);
         
         // Fetch fresh driver to return routeID (technically we just generated it, but good to be consistent)
         Driver driver = driverRepository.findById(driverId).orElse(new Driver()); 
@@ -75,9 +114,7 @@ public class DriverGrpcService extends DriverServiceGrpc.DriverServiceImplBase {
         
         // Notify Matching Service about new driver availability
         try {
-            String token = AuthInterceptor.AUTH_TOKEN_KEY.get();
-            String event = "DRIVER_AVAILABLE," + driverId + "," + (token != null ? token : "");
-            redisTemplate.convertAndSend("driver-events", event);
+            publishDriverAvailable(driverId);
             log.debug("Published DRIVER_AVAILABLE event for driver: {}", driverId);
         } catch (Exception e) {
             log.error("Failed to publish driver availability event for driver: {}", driverId, e);
@@ -87,6 +124,24 @@ public class DriverGrpcService extends DriverServiceGrpc.DriverServiceImplBase {
         responseObserver.onCompleted();
     }
     
+    /**
+     * Appends a DRIVER_AVAILABLE event to the driver-events stream. Matching-service reads it
+     * through a consumer group, so events survive a matching restart and each one is handled
+     * by a single replica. The stream is capped at roughly DRIVER_EVENTS_MAXLEN entries.
+     */
+    private void publishDriverAvailable(String driverId) {
+        String token = AuthInterceptor.AUTH_TOKEN_KEY.get();
+        Map<byte[], byte[]> fields = new HashMap<>();
+        fields.put("type".getBytes(), "DRIVER_AVAILABLE".getBytes());
+        fields.put("driverId".getBytes(), driverId.getBytes());
+        fields.put("token".getBytes(), (token != null ? token : "").getBytes());
+        MapRecord<byte[], byte[], byte[]> record = StreamRecords.newRecord()
+                .in("driver-events".getBytes())
+                .ofMap(fields);
+        redisTemplate.execute((RedisCallback<RecordId>) connection -> connection.streamCommands().xAdd(record,
+                RedisStreamCommands.XAddOptions.maxlen(DRIVER_EVENTS_MAXLEN).approximateTrimming(true)));
+    }
+
     @Override
     public void updateLocation(UpdateLocationRequest request,
                               StreamObserver<UpdateLocationResponse> responseObserver) {
@@ -119,9 +174,7 @@ public class DriverGrpcService extends DriverServiceGrpc.DriverServiceImplBase {
         
         // Notify Matching Service about driver availability (location update)
         try {
-            String token = AuthInterceptor.AUTH_TOKEN_KEY.get();
-            String event = "DRIVER_AVAILABLE," + driverId + "," + (token != null ? token : "");
-            redisTemplate.convertAndSend("driver-events", event);
+            publishDriverAvailable(driverId);
             log.info("Published DRIVER_AVAILABLE event for driver location update: {}", driverId);
         } catch (Exception e) {
             log.error("Failed to publish driver availability event for driver: {}", driverId, e);
@@ -154,26 +207,43 @@ public class DriverGrpcService extends DriverServiceGrpc.DriverServiceImplBase {
         record.setStatus("scheduled");
         record.setFare(request.getFare());
         
-        Query query = new Query(Criteria.where("_id").is(driverId).and("availableSeats").gt(0));
+        // A retried accept for a trip the driver already has must not take a second seat
+        Query query = new Query(Criteria.where("_id").is(driverId).and("availableSeats").gt(0)
+                .and("activeTrips.tripId").ne(tripId));
         Update update = new Update()
                 .push("activeTrips", record)
                 .inc("availableSeats", -1);
         
-        long modifiedCount = mongoTemplate.updateFirst(query, update, Driver.class).getModifiedCount();
-        
-        if (modifiedCount > 0) {
-            Driver driver = driverRepository.findById(driverId).orElse(null);
-            int availableSeats = driver != null ? driver.getAvailableSeats() : 0;
+        Driver driver = mongoTemplate.findAndModify(query, update,
+                org.springframework.data.mongodb.core.FindAndModifyOptions.options().returnNew(true), Driver.class);
+        long modifiedCount = driver != null ? 1 : 0;
+        boolean alreadyAccepted = modifiedCount == 0 && mongoTemplate.exists(
+                new Query(Criteria.where("_id").is(driverId).and("activeTrips.tripId").is(tripId)), Driver.class);
+        
+        if (alreadyAccepted) {
+            log.info("Trip already accepted - driverId: {}, tripId: {}", driverId, tripId);
+        } else if (modifiedCount > 0) {
+            // The seat matching held for this rider is now taken
+            if (!seatLedger.commit(driver.getRouteId(), driver.getAvailableSeats() + 1)) {
+                log.warn("Seat ledger had no seat to commit - driverId: {}, routeId: {}", driverId, driver.getRouteId());
+            }
+            // Remember which route's ledger the seat came from; the driver may register a new
+            // route before the trip completes
+            record.setRouteId(driver.getRouteId());
+            mongoTemplate.updateFirst(
+                new Query(Criteria.where("_id").is(driverId).and("activeTrips.tripId").is(tripId)),
+                new Update().set("activeTrips.$.routeId", driver.getRouteId()), Driver.class);
             log.info("Trip accepted successfully - driverId: {}, tripId: {}, availableSeats: {}", 
-                driverId, tripId, availableSeats);
+                driverId, tripId, driver.getAvailableSeats());
+            publishDashboardDelta(driver, record, false);
         } else {
             log.warn("Trip accept failed - driverId: {}, tripId: {} - no seats or driver not found", 
                 driverId, tripId);
         }
         
         AcceptTripResponse response = AcceptTripResponse.newBuilder()
-                .setSuccess(modifiedCount > 0)
-                .setMessage(modifiedCount > 0 ? "Trip accepted" : "Driver not found or no seats available")
+                .setSuccess(modifiedCount > 0 || alreadyAccepted)
+                .setMessage(modifiedCount > 0 || alreadyAccepted ? "Trip accepted" : "Driver not found or no seats available")
                 .build();
 
         responseObserver.onNext(response);
@@ -193,10 +263,16 @@ public class DriverGrpcService extends DriverServiceGrpc.DriverServiceImplBase {
                 .set("activeTrips.$.status", "active")
                 .set("activeTrips.$.pickupTimestamp", System.currentTimeMillis());
 
-        long modifiedCount = mongoTemplate.updateFirst(query, update, Driver.class).getModifiedCount();
+        Driver driver = mongoTemplate.findAndModify(query, update,
+                org.springframework.data.mongodb.core.FindAndModifyOptions.options().returnNew(true), Driver.class);
+        long modifiedCount = driver != null ? 1 : 0;
         
         if (modifiedCount > 0) {
             log.info("Trip started successfully - driverId: {}, tripId: {}", driverId, tripId);
+            driver.getActiveTrips().stream()
+                .filter(t -> tripId.equals(t.getTripId()))
+                .findFirst()
+                .ifPresent(started -> publishDashboardDelta(driver, started, false));
         } else {
             log.warn("Trip start failed - trip not found: driverId: {}, tripId: {}", driverId, tripId);
         }
@@ -252,23 +328,28 @@ public class DriverGrpcService extends DriverServiceGrpc.DriverServiceImplBase {
         tripToMove.setStatus("completed");
         tripToMove.setDropoffTimestamp(System.currentTimeMillis());
 
+        // History first: the append is idempotent, so a failed or repeated completion cannot lose the trip
+        tripHistory.append(driverId, tripToMove);
+
         Query query = new Query(Criteria.where("_id").is(driverId).and("activeTrips.tripId").is(tripId));
         Update update = new Update()
                 .pull("activeTrips", Query.query(Criteria.where("tripId").is(tripId)))
-                .push("rideHistory", tripToMove)
                 .inc("totalEarnings", tripToMove.getFare())
                 .inc("availableSeats", 1);
 
-        long modifiedCount = mongoTemplate.updateFirst(query, update, Driver.class).getModifiedCount();
+        Driver updated = mongoTemplate.findAndModify(query, update,
+                org.springframework.data.mongodb.core.FindAndModifyOptions.options().returnNew(true), Driver.class);
+        long modifiedCount = updated != null ? 1 : 0;
 
         if (modifiedCount > 0) {
+            // Trips accepted before routeId was recorded fall back to the current route
+            seatLedger.restore(tripToMove.getRouteId() != null ? tripToMove.getRouteId() : driver.getRouteId());
+            publishDashboardDelta(updated, tripToMove, true);
             log.info("Trip completed successfully - driverId: {}, tripId: {}, fare: {}", 
                 driverId, tripId, tripToMove.getFare());
             
             try {
-                String token = AuthInterceptor.AUTH_TOKEN_KEY.get();
-                String event = "DRIVER_AVAILABLE," + driverId + "," + (token != null ? token : "");
-                redisTemplate.convertAndSend("driver-events", event);
+                publishDriverAvailable(driverId);
                 log.debug("Published DRIVER_AVAILABLE event after trip completion - driverId: {}", driverId);
             } catch (Exception e) {
                 log.error("Failed to publish driver availability event - driverId: {}", driverId, e);
@@ -293,7 +374,7 @@ public class DriverGrpcService extends DriverServiceGrpc.DriverServiceImplBase {
                               StreamObserver<GetDriverInfoResponse> responseObserver) {
         String driverId = request.getDriverId();
         
-        Driver driver = driverRepository.findById(driverId)
+        Driver driver = driverRepository.findInfoById(driverId)
                 .orElse(null);
         
         GetDriverInfoResponse.Builder responseBuilder = GetDriverInfoResponse.newBuilder();
@@ -306,6 +387,7 @@ public class DriverGrpcService extends DriverServiceGrpc.DriverServiceImplBase {
                     .setAvailableSeats(driver.getAvailableSeats())
                     .addAllMetroStations(driver.getMetroStations())
                     .setRating(driver.getRating())
+                    .setRouteId(driver.getRouteId() != null ? driver.getRouteId() : "")
                     .setSuccess(true);
             
             if (driver.getCurrentLocation() != null) {
@@ -328,26 +410,25 @@ public class DriverGrpcService extends DriverServiceGrpc.DriverServiceImplBase {
         String station = request.getStation();
         List<Driver> drivers;
         
+        long activeThreshold = 60000; // 60 seconds
+        long activeSince = System.currentTimeMillis() - activeThreshold;
+
+        // Only drivers seen in the last minute, and only the fields DriverInfo needs
         if (station == null || station.isEmpty()) {
-             drivers = driverRepository.findAll();
+             drivers = driverRepository.findInfoActiveSince(activeSince);
         } else {
-             // Optimized: Use DB query instead of filtering in memory
-             drivers = driverRepository.findByMetroStationsContaining(station);
+             drivers = driverRepository.findInfoByStationActiveSince(station, activeSince);
         }
-        
-        long now = System.currentTimeMillis();
-        long activeThreshold = 60000; // 60 seconds
 
         List<DriverInfo> driverInfos = drivers.stream()
-            .filter(driver -> driver.getCurrentLocation() != null && 
-                             (now - driver.getCurrentLocation().getTimestamp() < activeThreshold))
             .map(driver -> {
             DriverInfo.Builder infoBuilder = DriverInfo.newBuilder()
                     .setDriverId(driver.getDriverId())
                     .setDestination(driver.getDestination() != null ? driver.getDestination() : "")
                     .setAvailableSeats(driver.getAvailableSeats())
                     .addAllMetroStations(driver.getMetroStations() != null ? driver.getMetroStations() : Collections.emptyList())
-                    .setRating(driver.getRating());
+                    .setRating(driver.getRating())
+                    .setRouteId(driver.getRouteId() != null ? driver.getRouteId() : "");
 
             if (driver.getCurrentLocation() != null) {
                 Location location = Location.newBuilder()
@@ -384,37 +465,21 @@ public class DriverGrpcService extends DriverServiceGrpc.DriverServiceImplBase {
 
 
         if (driver.getActiveTrips() == null) driver.setActiveTrips(new ArrayList<>());
-        if (driver.getRideHistory() == null) driver.setRideHistory(new ArrayList<>());
-
 
+        // Running aggregates, kept up to date by completeActiveTrip and setRatingReceivedFromRider
         int totalEarnings = driver.getTotalEarnings();
-        if (totalEarnings == 0 && !driver.getRideHistory().isEmpty()) {
-            totalEarnings = driver.getRideHistory().stream().mapToInt(Driver.TripRecord::getFare).sum();
-        }
 
         double computedRating = driver.getRating();
-        if (!driver.getRideHistory().isEmpty()) {
-            double avgRating = driver.getRideHistory().stream()
-                .filter(t -> t.getDriverRatingReceived() > 0)
-                .mapToInt(Driver.TripRecord::getDriverRatingReceived)
-                .average()
-                .orElse(0.0);
-            
-            if (avgRating > 0) {
-                computedRating = Math.round(avgRating * 100.0) / 100.0;
-            }
+        if (driver.getRatingCount() > 0) {
+            double avgRating = (double) driver.getRatingSum() / driver.getRatingCount();
+            computedRating = Math.round(avgRating * 100.0) / 100.0;
         }
 
-        LocalDate today = LocalDate.now(ZoneId.of("Asia/Kolkata"));
-        LocalDate yesterday = today.minusDays(1);
-        int todayEarnings = 0;
-        int yesterdayEarnings = 0;
-        for (Driver.TripRecord rec : driver.getRideHistory()) {
-            LocalDate tripDay = Instant.ofEpochMilli(rec.getDropoffTimestamp() == 0 ? rec.getPickupTimestamp() : rec.getDropoffTimestamp())
-                    .atZone(ZoneId.of("Asia/Kolkata")).toLocalDate();
-            if (tripDay.equals(today)) todayEarnings += rec.getFare();
-            else if (tripDay.equals(yesterday)) yesterdayEarnings += rec.getFare();
-        }
+        LocalDate today = LocalDate.now(TripHistoryStore.ZONE);
+        String yesterday = today.minusDays(1).toString();
+        Map<String, Integer> dailyEarnings = tripHistory.earningsByDay(driverId, List.of(today.toString(), yesterday));
+        int todayEarnings = dailyEarnings.getOrDefault(today.toString(), 0);
+        int yesterdayEarnings = dailyEarnings.getOrDefault(yesterday, 0);
 
         for (Driver.TripRecord rec : driver.getActiveTrips()) {
             TripInfo info = TripInfo.newBuilder()
@@ -431,10 +496,13 @@ public class DriverGrpcService extends DriverServiceGrpc.DriverServiceImplBase {
             b.addActiveTrips(info);
         }
 
-        for (Driver.TripRecord rec : driver.getRideHistory()) {
+        int historyLimit = request.getHistoryLimit() > 0 ? Math.min(request.getHistoryLimit(), MAX_HISTORY_PAGE) : DEFAULT_HISTORY_PAGE;
+        TripHistoryStore.Page history = tripHistory.page(driverId, request.getHistoryBefore(),
+            request.getHistoryBeforeTripId(), historyLimit);
+        for (Driver.TripRecord rec : history.trips()) {
             RideHistoryItem item = RideHistoryItem.newBuilder()
                     .setTripId(rec.getTripId())
-                    .setDate(Instant.ofEpochMilli(rec.getPickupTimestamp()).atZone(ZoneId.of("Asia/Kolkata")).toLocalDate().toString())
+                    .setDate(TripHistoryStore.day(rec.getPickupTimestamp()))
                     .setRiderName(rec.getRiderName())
                     .setDestination(rec.getDestination())
                     .setFare(rec.getFare())
@@ -451,6 +519,8 @@ public class DriverGrpcService extends DriverServiceGrpc.DriverServiceImplBase {
                 .setTotalEarnings(totalEarnings)
                 .setTodayEarnings(todayEarnings)
                 .setYesterdayEarnings(yesterdayEarnings)
+                .setNextHistoryBefore(history.nextBefore())
+                .setNextHistoryBeforeTripId(history.nextBeforeTripId())
                 .setDestination(driver.getDestination() == null ? "" : driver.getDestination())
                 .setAvailableSeats(driver.getAvailableSeats())
                 .addAllMetroStations(driver.getMetroStations() == null ? List.of() : driver.getMetroStations());
@@ -474,11 +544,7 @@ public class DriverGrpcService extends DriverServiceGrpc.DriverServiceImplBase {
         String tripId = request.getTripId();
         int rating = request.getRating();
         
-        Query query = new Query(Criteria.where("_id").is(driverId)
-                .and("rideHistory.tripId").is(tripId));
-        Update update = new Update().set("rideHistory.$.riderRatingGiven", rating);
-        
-        long modifiedCount = mongoTemplate.updateFirst(query, update, Driver.class).getModifiedCount();
+        long modifiedCount = tripHistory.setRating(driverId, tripId, "riderRatingGiven", rating) != null ? 1 : 0;
         
         RateRiderResponse response = RateRiderResponse.newBuilder()
                 .setSuccess(modifiedCount > 0)
@@ -496,11 +562,16 @@ public class DriverGrpcService extends DriverServiceGrpc.DriverServiceImplBase {
         String tripId = request.getTripId();
         int rating = request.getRating();
 
-        Query query = new Query(Criteria.where("_id").is(driverId)
-                .and("rideHistory.tripId").is(tripId));
-        Update update = new Update().set("rideHistory.$.driverRatingReceived", rating);
+        Integer previous = tripHistory.setRating(driverId, tripId, "driverRatingReceived", rating);
+        long modifiedCount = previous != null ? 1 : 0;
 
-        long modifiedCount = mongoTemplate.updateFirst(query, update, Driver.class).getModifiedCount();
+        // Adjust the running sum and count by what this rating changed (0 means unrated)
+        if (previous != null && previous != rating) {
+            Update aggregates = new Update().inc("ratingSum", rating - previous);
+            int countDelta = (rating > 0 ? 1 : 0) - (previous > 0 ? 1 : 0);
+            if (countDelta != 0) aggregates.inc("ratingCount", countDelta);
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(driverId)), aggregates, Driver.class);
+        }
 
         SetRatingReceivedFromRiderResponse response = SetRatingReceivedFromRiderResponse.newBuilder()
                 .setSuccess(modifiedCount > 0)
@@ -512,29 +583,61 @@ public class DriverGrpcService extends DriverServiceGrpc.DriverServiceImplBase {
     }
 
     private List<TripInfo> getActiveTripsForDriver(String driverId) {
-        Driver driver = driverRepository.findById(driverId).orElse(null);
+        Query query = new Query(Criteria.where("_id").is(driverId));
+        query.fields().include("activeTrips");
+        Driver driver = mongoTemplate.findOne(query, Driver.class);
         if (driver != null && driver.getActiveTrips() != null) {
-            return driver.getActiveTrips().stream().map(record -> TripInfo.newBuilder()
-                    .setTripId(record.getTripId())
-                    .setRiderId(record.getRiderId() != null ? record.getRiderId() : "")
-                    .setRiderName(record.getRiderName() != null ? record.getRiderName() : "Unknown")
-                    .setRiderRating(record.getRiderRating())
-                    .setPickupStation(record.getPickupStation())
-                    .setDestination(record.getDestination())
-                    .setStatus(record.getStatus())
-                    .setPickupTimestamp(record.getPickupTimestamp())
-                    .setFare(record.getFare())
-                    .build()).toList();
+            return driver.getActiveTrips().stream().map(this::toTripInfo).toList();
         }
         return new ArrayList<>();
     }
 
+    private TripInfo toTripInfo(Driver.TripRecord record) {
+        return TripInfo.newBuilder()
+                .setTripId(record.getTripId())
+                .setRiderId(record.getRiderId() != null ? record.getRiderId() : "")
+                .setRiderName(record.getRiderName() != null ? record.getRiderName() : "Unknown")
+                .setRiderRating(record.getRiderRating())
+                .setPickupStation(record.getPickupStation())
+                .setDestination(record.getDestination())
+                .setStatus(record.getStatus())
+                .setPickupTimestamp(record.getPickupTimestamp())
+                .setFare(record.getFare())
+                .build();
+    }
+
+    /**
+     * Sends the dashboard what a trip write changed, taken from the document the write
+     * returned, so open dashboard streams do not have to read the driver back.
+     */
+    private void publishDashboardDelta(Driver driver, Driver.TripRecord trip, boolean removed) {
+        DashboardDelta.Builder delta = DashboardDelta.newBuilder()
+                .setTrip(toTripInfo(trip))
+                .setTripRemoved(removed)
+                .setAvailableSeats(driver.getAvailableSeats())
+                .setTotalEarnings(driver.getTotalEarnings());
+        if ("completed".equals(trip.getStatus())) {
+            delta.setCompletedTrip(RideHistoryItem.newBuilder()
+                    .setTripId(trip.getTripId())
+                    .setDate(TripHistoryStore.today())
+                    .setRiderName(trip.getRiderName() != null ? trip.getRiderName() : "Unknown")
+                    .setDestination(trip.getDestination())
+                    .setFare(trip.getFare())
+                    .setPickupTimestamp(trip.getPickupTimestamp())
+                    .setDropoffTimestamp(trip.getDropoffTimestamp()));
+        }
+        try {
+            EventCodec.publish(redisTemplate, "driver-dashboard:" + driver.getDriverId(), EventCodec.dashboardDelta(delta.build()));
+        } catch (Exception e) {
+            log.error("Failed to publish dashboard delta - driverId: {}, tripId: {}", driver.getDriverId(), trip.getTripId(), e);
+        }
+    }
+
     @Override
     public void monitorDriverDashboard(MonitorDriverDashboardRequest request,
                                        StreamObserver<MonitorDriverDashboardResponse> responseObserver) {
         String driverId = request.getDriverId();
-        String channel = "driver-dashboard:" + driverId;
-        System.out.println("DEBUG: Driver " + driverId + " subscribed to dashboard updates on channel: " + channel);
+        System.out.println("DEBUG: Driver " + driverId + " subscribed to dashboard updates");
         
         io.grpc.stub.ServerCallStreamObserver<MonitorDriverDashboardResponse> serverObserver = 
             (io.grpc.stub.ServerCallStreamObserver<MonitorDriverDashboardResponse>) responseObserver;
@@ -546,104 +649,60 @@ public class DriverGrpcService extends DriverServiceGrpc.DriverServiceImplBase {
             .build();
         responseObserver.onNext(initialResponse);
 
-        // Create a thread pool for processing messages to avoid blocking the Redis listener thread
-        java.util.concurrent.ExecutorService executor = java.util.concurrent.Executors.newCachedThreadPool();
+        // Process messages on the shared dashboard pool, in order, to avoid blocking the Redis listener thread
+        DashboardDispatcher.Lane lane = dashboardDispatcher.open(driverId);
 
-        org.springframework.data.redis.connection.MessageListener listener = (message, pattern) -> {
-            executor.submit(() -> {
+        ChannelMultiplexer.Subscription subscription = channels.subscribe("driver-dashboard", driverId, body -> {
+            lane.submit(() -> {
                 try {
-                    String body = new String(message.getBody());
-                    log.info("Received Redis message for driver {}: {}", driverId, body);
-                    String[] parts = body.split(",", 2);
+                    DriverDashboardEvent event = EventCodec.decodeDashboard(body);
+                    log.info("Received Redis message for driver {}: {}", driverId, event != null ? event.getEventCase() : "malformed");
                     
-                    if (parts.length >= 2) {
-                        String type = parts[0];
-                        String data = parts[1];
-                        System.out.println("DEBUG: Message Type: " + type + ", Data: " + data);
-                        
+                    if (event != null && event.getEventCase() != DriverDashboardEvent.EventCase.EVENT_NOT_SET) {
                         MonitorDriverDashboardResponse.Builder responseBuilder = MonitorDriverDashboardResponse.newBuilder();
                         
-                        if ("MATCH_REQUEST".equals(type)) {
-                            // Expected format: matchId::riderId::pickup::fare::dest
-                            String[] matchParts = data.split("::");
-                            if (matchParts.length >= 5) {
-                                System.out.println("DEBUG: Processing MATCH_REQUEST for driver " + driverId);
-                                responseBuilder.setMatchRequest(
-                                    MatchRequest.newBuilder()
-                                        .setMatchId(matchParts[0])
-                                        .setRiderId(matchParts[1])
-                                        .setPickupStation(matchParts[2])
-                                        .setDestination(matchParts[4])
-                                        .setFare(Integer.parseInt(matchParts[3].trim()))
-                                        .build()
-                                );
-                            } else {
-                                 System.err.println("DEBUG: Invalid MATCH_REQUEST format: " + data);
-                            }
-                        } else if ("TRIP_UPDATE".equals(type)) {
-                            String[] tripParts = data.split(",");
-                            if (tripParts.length >= 2) {
-                                System.out.println("DEBUG: Processing TRIP_UPDATE for driver " + driverId);
-                                responseBuilder.setTripUpdate(
-                                    TripUpdate.newBuilder()
-                                        .setTripId(tripParts[0])
-                                        .setStatus(tripParts[1])
-                                        .build()
-                                );
-                                // Include updated active trips list
-                                responseBuilder.addAllActiveTrips(getActiveTripsForDriver(driverId));
-                                
-                                // Include available seats, earnings, and latest history in message field as JSON
-                                Driver driver = driverRepository.findById(driverId).orElse(null);
-                                if (driver != null) {
-                                    StringBuilder jsonBuilder = new StringBuilder();
-                                    jsonBuilder.append("{");
-                                    jsonBuilder.append("\"availableSeats\": ").append(driver.getAvailableSeats());
-                                    
-                                    // Add Total Earnings
-                                    int totalEarnings = driver.getTotalEarnings();
-                                    if (totalEarnings == 0 && driver.getRideHistory() != null) {
-                                        totalEarnings = driver.getRideHistory().stream().mapToInt(Driver.TripRecord::getFare).sum();
-                                    }
-                                    jsonBuilder.append(", \"totalEarnings\": ").append(totalEarnings);
-
-                                    // Add Latest History Item if completed
-                                    if ("COMPLETED".equalsIgnoreCase(tripParts[1]) && driver.getRideHistory() != null && !driver.getRideHistory().isEmpty()) {
-                                        // Assuming the last item is the most recent one we just moved
-                                        Driver.TripRecord lastTrip = driver.getRideHistory().get(driver.getRideHistory().size() - 1);
-                                        jsonBuilder.append(", \"latestTrip\": {");
-                                        jsonBuilder.append("\"id\": \"").append(lastTrip.getTripId()).append("\",");
-                                        jsonBuilder.append("\"riderName\": \"").append(lastTrip.getRiderName()).append("\",");
-                                        jsonBuilder.append("\"destination\": \"").append(lastTrip.getDestination()).append("\",");
-                                        jsonBuilder.append("\"fare\": ").append(lastTrip.getFare()).append(",");
-                                        jsonBuilder.append("\"date\": \"").append(LocalDate.now().toString()).append("\"");
-                                        jsonBuilder.append("}");
-                                    }
-                                    
-                                    jsonBuilder.append("}");
-                                    responseBuilder.setMessage(jsonBuilder.toString());
-                                }
-                            }
+                        if (event.hasMatchRequest()) {
+                            MatchRequestEvent matchRequest = event.getMatchRequest();
+                            System.out.println("DEBUG: Processing MATCH_REQUEST for driver " + driverId);
+                            responseBuilder.setMatchRequest(
+                                MatchRequest.newBuilder()
+                                    .setMatchId(matchRequest.getMatchId())
+                                    .setRiderId(matchRequest.getRiderId())
+                                    .setPickupStation(matchRequest.getPickupStation())
+                                    .setDestination(matchRequest.getDestination())
+                                    .setFare(matchRequest.getFare())
+                                    .build()
+                            );
+                        } else if (event.hasTripUpdate()) {
+                            // Seats, earnings and the trip itself arrive as a delta from the write
+                            TripUpdateEvent tripUpdate = event.getTripUpdate();
+                            responseBuilder.setTripUpdate(
+                                TripUpdate.newBuilder()
+                                    .setTripId(tripUpdate.getTripId())
+                                    .setStatus(tripUpdate.getStatus())
+                                    .build()
+                            );
+                        } else if (event.hasDelta()) {
+                            responseBuilder.setDelta(event.getDelta());
                         }
                         
                         synchronized (responseObserver) {
                             responseObserver.onNext(responseBuilder.build());
                         }
                     } else {
-                        System.err.println("DEBUG: Invalid message format received: " + body);
+                        System.err.println("DEBUG: Invalid dashboard event received for driver " + driverId);
                     }
                 } catch (Exception e) {
                     System.err.println("DEBUG: Error processing Redis message: " + e.getMessage());
                     e.printStackTrace();
                 }
             });
-        };
-
-        redisMessageListenerContainer.addMessageListener(listener, new org.springframework.data.redis.listener.ChannelTopic(channel));
+        });
 
         serverObserver.setOnCancelHandler(() -> {
             System.out.println("DEBUG: Driver " + driverId + " disconnected from dashboard stream");
-            redisMessageListenerContainer.removeMessageListener(listener);
+            subscription.cancel();
+            lane.close();
         });
     }
 }
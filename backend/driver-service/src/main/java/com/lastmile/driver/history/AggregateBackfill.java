@@ -0,0 +1,89 @@
+package com.lastmile.driver.history;
+
+import com.lastmile.driver.model.Driver;
+import com.lastmile.driver.model.TripHistoryBucket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AccumulatorOperators;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * One-time fill of the running aggregates for data written before they existed: per-day
+ * earnings on history buckets, and the rating sum/count (plus total earnings, if never set)
+ * on drivers. Runs on startup after the ride history migration.
+ *
+ * Live trips and ratings {@code $inc} the aggregates as soon as this version is deployed, so
+ * a record having the fields says nothing about whether it is complete. Instead every
+ * bucket and driver is recomputed from its trips and the values are set outright; a marker
+ * in {@value #MIGRATIONS} is written once that has finished, and later startups skip it.
+ */
+@Component
+public class AggregateBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(AggregateBackfill.class);
+
+    private static final int BATCH = 100;
+
+    private static final String MIGRATIONS = "migrations";
+    private static final String MARKER = "aggregate-backfill";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private TripHistoryStore tripHistory;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(1)
+    public void backfill() {
+        try {
+            Query marker = new Query(Criteria.where("_id").is(MARKER));
+            if (mongoTemplate.exists(marker, MIGRATIONS)) return;
+
+            // Each bucket is summed from its own trips within the update, so a concurrent append is never lost
+            long buckets = mongoTemplate.updateMulti(
+                new Query(),
+                AggregationUpdate.update().set("earnings").toValue(AccumulatorOperators.Sum.sumOf("trips.fare")),
+                TripHistoryBucket.class).getModifiedCount();
+
+            int drivers = 0;
+            String after = null;
+            List<Driver> batch;
+            do {
+                Query page = new Query(after != null ? Criteria.where("_id").gt(after) : new Criteria())
+                    .with(Sort.by(Sort.Direction.ASC, "_id"))
+                    .limit(BATCH);
+                page.fields().include("_id");
+                batch = mongoTemplate.find(page, Driver.class);
+                for (Driver driver : batch) {
+                    TripHistoryStore.Totals totals = tripHistory.totals(driver.getDriverId());
+                    mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(driver.getDriverId())),
+                        new Update()
+                            .set("ratingSum", totals.ratingSum())
+                            .set("ratingCount", (int) totals.ratingCount())
+                            .max("totalEarnings", totals.earnings()),
+                        Driver.class);
+                    drivers++;
+                    after = driver.getDriverId();
+                }
+            } while (batch.size() == BATCH);
+
+            mongoTemplate.upsert(marker, Update.update("completedAt", System.currentTimeMillis()), MIGRATIONS);
+            log.info("Backfilled aggregates for {} history buckets and {} drivers", buckets, drivers);
+        } catch (Exception e) {
+            log.error("Aggregate backfill failed; it runs again on the next startup", e);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.lastmile.driver.history;
+
+import com.lastmile.driver.model.Driver;
+import com.lastmile.driver.model.TripHistoryBucket;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Completed trips, one {@link TripHistoryBucket} per driver per day.
+ *
+ * Appends are idempotent per trip, so completing a trip can write history before the driver
+ * document and a retry never records it twice. Each bucket keeps its day's earnings, so
+ * daily figures are a single field read. Drivers that still carry an embedded rideHistory
+ * array are moved over once on startup.
+ */
+@Component
+public class TripHistoryStore {
+
+    private static final Logger log = LoggerFactory.getLogger(TripHistoryStore.class);
+
+    public static final ZoneId ZONE = ZoneId.of("Asia/Kolkata");
+
+    private static final int MIGRATION_BATCH = 100;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * One page of history, newest first. The next page starts after ({@code nextBefore},
+     * {@code nextBeforeTripId}); {@code nextBefore} is 0 when there is nothing older.
+     */
+    public record Page(List<Driver.TripRecord> trips, long nextBefore, String nextBeforeTripId) {
+    }
+
+    /** Lifetime earnings and the received ratings, summed over all buckets. */
+    public record Totals(int earnings, long ratingSum, long ratingCount) {
+    }
+
+    @jakarta.annotation.PostConstruct
+    public void init() {
+        mongoTemplate.indexOps(TripHistoryBucket.class).ensureIndex(
+            new Index().on("driverId", Sort.Direction.ASC).on("day", Sort.Direction.DESC).named("driver_day"));
+    }
+
+    public static String day(long epochMs) {
+        return Instant.ofEpochMilli(epochMs).atZone(ZONE).toLocalDate().toString();
+    }
+
+    public static String today() {
+        return LocalDate.now(ZONE).toString();
+    }
+
+    private static long completedAt(Driver.TripRecord trip) {
+        return trip.getDropoffTimestamp() == 0 ? trip.getPickupTimestamp() : trip.getDropoffTimestamp();
+    }
+
+    // History order: newest first, trips completed in the same millisecond by descending trip id
+    private static final Comparator<Driver.TripRecord> NEWEST_FIRST =
+        Comparator.comparingLong(TripHistoryStore::completedAt)
+            .thenComparing(trip -> trip.getTripId() == null ? "" : trip.getTripId())
+            .reversed();
+
+    /** Records a completed trip in its day's bucket; a trip already recorded is left alone. */
+    public void append(String driverId, Driver.TripRecord trip) {
+        String day = day(completedAt(trip));
+        String id = driverId + ":" + day;
+        Query query = new Query(Criteria.where("_id").is(id).and("trips.tripId").ne(trip.getTripId()));
+        Update update = new Update()
+            .setOnInsert("driverId", driverId)
+            .setOnInsert("day", day)
+            .push("trips", trip)
+            .inc("tripCount", 1)
+            .inc("earnings", trip.getFare());
+        try {
+            mongoTemplate.upsert(query, update, TripHistoryBucket.class);
+        } catch (DuplicateKeyException e) {
+            // The bucket exists and already holds this trip
+            log.debug("Trip already in history - driverId: {}, tripId: {}", driverId, trip.getTripId());
+        }
+    }
+
+    /**
+     * Up to {@code limit} trips that come after the cursor in history order, newest first: trips
+     * completed before {@code before} (epoch ms, 0 = now), plus those completed at {@code before}
+     * whose trip id sorts below {@code beforeTripId}, so trips sharing the boundary timestamp are
+     * neither skipped nor repeated.
+     */
+    public Page page(String driverId, long before, String beforeTripId, int limit) {
+        Query query = new Query(Criteria.where("driverId").is(driverId))
+            .with(Sort.by(Sort.Direction.DESC, "day"));
+        if (before > 0) {
+            query.addCriteria(Criteria.where("day").lte(day(before)));
+        }
+
+        List<Driver.TripRecord> trips = new ArrayList<>();
+        try (Stream<TripHistoryBucket> buckets = mongoTemplate.stream(query, TripHistoryBucket.class)) {
+            var iterator = buckets.iterator();
+            while (iterator.hasNext() && trips.size() < limit) {
+                TripHistoryBucket bucket = iterator.next();
+                if (bucket.getTrips() == null) continue;
+                bucket.getTrips().stream()
+                    .filter(trip -> before <= 0 || isAfterCursor(trip, before, beforeTripId))
+                    .sorted(NEWEST_FIRST)
+                    .limit(limit - trips.size())
+                    .forEach(trips::add);
+            }
+        }
+        if (trips.size() < limit) return new Page(trips, 0, "");
+        Driver.TripRecord last = trips.get(trips.size() - 1);
+        return new Page(trips, completedAt(last), last.getTripId() == null ? "" : last.getTripId());
+    }
+
+    private static boolean isAfterCursor(Driver.TripRecord trip, long before, String beforeTripId) {
+        long completedAt = completedAt(trip);
+        if (completedAt != before) return completedAt < before;
+        String tripId = trip.getTripId() == null ? "" : trip.getTripId();
+        return beforeTripId != null && !beforeTripId.isEmpty() && tripId.compareTo(beforeTripId) < 0;
+    }
+
+    /** Earnings per day for the given days; days without trips are absent. */
+    public Map<String, Integer> earningsByDay(String driverId, List<String> days) {
+        List<String> ids = days.stream().map(day -> driverId + ":" + day).toList();
+        Query query = new Query(Criteria.where("_id").in(ids));
+        query.fields().include("day").include("earnings");
+        Map<String, Integer> earnings = new HashMap<>();
+        for (TripHistoryBucket bucket : mongoTemplate.find(query, TripHistoryBucket.class)) {
+            earnings.put(bucket.getDay(), bucket.getEarnings());
+        }
+        return earnings;
+    }
+
+    /** Recomputes a driver's totals from the buckets; used to backfill the running aggregates. */
+    public Totals totals(String driverId) {
+        Criteria rated = Criteria.where("trips.driverRatingReceived").gt(0);
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(Criteria.where("driverId").is(driverId)),
+            Aggregation.unwind("trips"),
+            Aggregation.group("driverId")
+                .sum("trips.fare").as("earnings")
+                .sum(ConditionalOperators.when(rated).thenValueOf("trips.driverRatingReceived").otherwise(0)).as("ratingSum")
+                .sum(ConditionalOperators.when(rated).then(1).otherwise(0)).as("ratingCount"));
+        Document result = mongoTemplate.aggregate(aggregation, TripHistoryBucket.class, Document.class).getUniqueMappedResult();
+        if (result == null) return new Totals(0, 0, 0);
+        return new Totals(((Number) result.get("earnings")).intValue(),
+            ((Number) result.get("ratingSum")).longValue(), ((Number) result.get("ratingCount")).longValue());
+    }
+
+    /**
+     * Sets a rating field ({@code riderRatingGiven} or {@code driverRatingReceived}) on a
+     * recorded trip and returns the value it replaced, or null if the trip is not in history.
+     */
+    public Integer setRating(String driverId, String tripId, String field, int rating) {
+        Query query = new Query(Criteria.where("driverId").is(driverId).and("trips.tripId").is(tripId));
+        query.fields().elemMatch("trips", Criteria.where("tripId").is(tripId));
+        Update update = new Update().set("trips.$." + field, rating);
+        TripHistoryBucket before = mongoTemplate.findAndModify(query, update, TripHistoryBucket.class);
+        if (before == null || before.getTrips() == null || before.getTrips().isEmpty()) return null;
+        Driver.TripRecord trip = before.getTrips().get(0);
+        return "driverRatingReceived".equals(field) ? trip.getDriverRatingReceived() : trip.getRiderRatingGiven();
+    }
+
+    /** Moves embedded Driver.rideHistory arrays into buckets and drops them from the driver. */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    public void migrateEmbedded() {
+        Query pending = new Query(Criteria.where("rideHistory").exists(true)).limit(MIGRATION_BATCH);
+        pending.fields().include("_id").include("rideHistory");
+        int migrated = 0;
+        try {
+            List<Document> drivers;
+            while (!(drivers = mongoTemplate.find(pending, Document.class, "drivers")).isEmpty()) {
+                for (Document driver : drivers) {
+                    String driverId = String.valueOf(driver.get("_id"));
+                    Object history = driver.get("rideHistory");
+                    if (history instanceof List<?> records) {
+                        for (Object record : records) {
+                            if (record instanceof Document doc) {
+                                append(driverId, mongoTemplate.getConverter().read(Driver.TripRecord.class, doc));
+                            }
+                        }
+                    }
+                    mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(driver.get("_id"))),
+                        new Update().unset("rideHistory"), "drivers");
+                    migrated++;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Ride history migration stopped after {} drivers", migrated, e);
+            return;
+        }
+        if (migrated > 0) {
+            log.info("Moved embedded ride history of {} drivers to {}", migrated, "driver_trip_history");
+        }
+    }
+}
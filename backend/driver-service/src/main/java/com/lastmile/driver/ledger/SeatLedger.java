@@ -0,0 +1,92 @@
+package com.lastmile.driver.ledger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * driver-service's side of the seat ledger for a driver's route.
+ *
+ * Each route has a Redis hash {@code seats:<routeId>} with two counters:
+ * {@code free} (seats nobody holds) and {@code held} (seats reserved by MATCHED matches
+ * waiting for the driver, which matching-service moves between the two). Here the hash is
+ * created on route registration and seats leave and return to it with the driver's trips,
+ * each step a single atomic Lua script:
+ * <ul>
+ *   <li>commit: held -> taken, when the driver accepts the trip</li>
+ *   <li>restore: taken -> free, when the trip completes</li>
+ * </ul>
+ * Routes registered before the ledger existed are created lazily from the driver's
+ * availableSeats on first use.
+ */
+@Component
+public class SeatLedger {
+
+    private static final String KEY_PREFIX = "seats:";
+
+    // Routes are re-registered daily at the latest; stale ledgers expire on their own
+    private static final long TTL_SECONDS = 24 * 3600;
+
+    private static final String INIT_IF_ABSENT =
+        "if redis.call('EXISTS', KEYS[1]) == 0 then " +
+        "  redis.call('HSET', KEYS[1], 'free', ARGV[1], 'held', 0) " +
+        "  redis.call('EXPIRE', KEYS[1], ARGV[2]) " +
+        "end ";
+
+    // Turns a held seat into a taken one; accepts straight from free if nothing was held.
+    // Returns 1 on success, 0 if the route has no seat to give.
+    private static final RedisScript<Long> COMMIT = new DefaultRedisScript<>(
+        INIT_IF_ABSENT +
+        "if tonumber(redis.call('HGET', KEYS[1], 'held')) > 0 then " +
+        "  redis.call('HINCRBY', KEYS[1], 'held', -1) return 1 end " +
+        "if tonumber(redis.call('HGET', KEYS[1], 'free')) > 0 then " +
+        "  redis.call('HINCRBY', KEYS[1], 'free', -1) return 1 end " +
+        "return 0",
+        Long.class);
+
+    // Returns the free seats after restoring, or -1 if the route has no ledger
+    private static final RedisScript<Long> RESTORE = new DefaultRedisScript<>(
+        "if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end " +
+        "return redis.call('HINCRBY', KEYS[1], 'free', 1)",
+        Long.class);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    /** Starts a fresh ledger for a newly registered route. */
+    public void init(String routeId, int seats) {
+        if (routeId == null || routeId.isEmpty()) return;
+        String key = key(routeId);
+        redisTemplate.opsForHash().putAll(key, Map.of("free", String.valueOf(seats), "held", "0"));
+        redisTemplate.expire(key, Duration.ofSeconds(TTL_SECONDS));
+    }
+
+    /** The driver accepted: the held seat is now taken. */
+    public boolean commit(String routeId, int availableSeats) {
+        if (routeId == null || routeId.isEmpty()) return false;
+        return run(COMMIT, routeId, String.valueOf(availableSeats), String.valueOf(TTL_SECONDS)) == 1;
+    }
+
+    /** A taken seat was freed by a completed trip. */
+    public long restore(String routeId) {
+        if (routeId == null || routeId.isEmpty()) return -1;
+        return run(RESTORE, routeId);
+    }
+
+    private long run(RedisScript<Long> script, String routeId, String... args) {
+        List<String> keys = Collections.singletonList(key(routeId));
+        Long result = redisTemplate.execute(script, keys, (Object[]) args);
+        return result != null ? result : -1;
+    }
+
+    private static String key(String routeId) {
+        return KEY_PREFIX + routeId;
+    }
+}
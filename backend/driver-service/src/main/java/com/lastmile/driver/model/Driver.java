@@ -18,8 +18,10 @@ public class Driver {
     private Location currentLocation;
     private double rating; 
     private int totalEarnings; 
+    private long ratingSum; // received ratings, kept with $inc as they arrive
+    private int ratingCount;
     private java.util.List<TripRecord> activeTrips; 
-    private java.util.List<TripRecord> rideHistory; 
+    // Completed trips live in TripHistoryBucket, not here
     
     @Data
     public static class Location {
@@ -31,6 +33,7 @@ public class Driver {
     @Data
     public static class TripRecord {
         private String tripId;
+        private String routeId; // route whose seat the trip took; the seat goes back to it
         private String riderId; 
         private String riderName;
         private double riderRating; // rating of rider at time of trip
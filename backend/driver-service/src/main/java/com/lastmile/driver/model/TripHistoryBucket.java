@@ -0,0 +1,23 @@
+package com.lastmile.driver.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.List;
+
+/**
+ * A driver's completed trips for one day (Asia/Kolkata, by dropoff time). Kept out of the
+ * driver document so history can grow without making every driver read heavier.
+ */
+@Data
+@Document(collection = "driver_trip_history")
+public class TripHistoryBucket {
+    @Id
+    private String id; // driverId:YYYY-MM-DD
+    private String driverId;
+    private String day; // YYYY-MM-DD
+    private int tripCount;
+    private int earnings; // sum of trip fares, kept with $inc on append
+    private List<Driver.TripRecord> trips;
+}
@@ -2,12 +2,25 @@ package com.lastmile.driver.repository;
 
 import com.lastmile.driver.model.Driver;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface DriverRepository extends MongoRepository<Driver, String> {
-    List<Driver> findByMetroStationsContaining(String station);
+    // What listDrivers and getDriverInfo return; leaves out active trips and aggregates
+    String INFO_FIELDS = "{ 'routeId': 1, 'destination': 1, 'availableSeats': 1, 'metroStations': 1, 'rating': 1, 'currentLocation': 1 }";
+
+    @Query(value = "{ '_id': ?0 }", fields = INFO_FIELDS)
+    Optional<Driver> findInfoById(String driverId);
+
+    // Drivers whose last location is newer than the given epoch ms
+    @Query(value = "{ 'currentLocation.timestamp': { '$gt': ?0 } }", fields = INFO_FIELDS)
+    List<Driver> findInfoActiveSince(long since);
+
+    @Query(value = "{ 'metroStations': ?0, 'currentLocation.timestamp': { '$gt': ?1 } }", fields = INFO_FIELDS)
+    List<Driver> findInfoByStationActiveSince(String station, long since);
 }
 
@@ -4,6 +4,7 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
 @SpringBootApplication
+@org.springframework.scheduling.annotation.EnableScheduling
 public class LocationServiceApplication {
     public static void main(String[] args) {
         SpringApplication.run(LocationServiceApplication.class, args);
@@ -0,0 +1,86 @@
+package com.lastmile.location.events;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+/**
+ * Fans Redis channel messages out to the server streams open on this instance.
+ *
+ * Each channel family ({@code match-status}, {@code driver-dashboard}, ...) is subscribed
+ * once, with the pattern {@code <family>:*}, the first time a stream asks for it. Streams
+ * register a handler for the ID after the colon; subscribing and cancelling only touch a
+ * local map, and a message is routed with one lookup. Handlers run on the listener
+ * container's thread and must not block.
+ */
+@Component
+public class ChannelMultiplexer {
+
+    private static final Logger log = LoggerFactory.getLogger(ChannelMultiplexer.class);
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    // family -> ID -> handlers of the streams watching it
+    private final Map<String, Map<String, Set<Consumer<byte[]>>>> families = new ConcurrentHashMap<>();
+
+    /** Undoes one {@link #subscribe} call. */
+    public interface Subscription {
+        void cancel();
+    }
+
+    /** Calls the handler with the body of every message on {@code <family>:<id>}. */
+    public Subscription subscribe(String family, String id, Consumer<byte[]> handler) {
+        Map<String, Set<Consumer<byte[]>>> byId = families.computeIfAbsent(family, this::listen);
+        byId.compute(id, (key, handlers) -> {
+            if (handlers == null) handlers = new CopyOnWriteArraySet<>();
+            handlers.add(handler);
+            return handlers;
+        });
+        return () -> byId.computeIfPresent(id, (key, handlers) -> {
+            handlers.remove(handler);
+            return handlers.isEmpty() ? null : handlers;
+        });
+    }
+
+    /** Number of IDs in the family with at least one open stream. */
+    public int watched(String family) {
+        Map<String, Set<Consumer<byte[]>>> byId = families.get(family);
+        return byId != null ? byId.size() : 0;
+    }
+
+    private Map<String, Set<Consumer<byte[]>>> listen(String family) {
+        Map<String, Set<Consumer<byte[]>>> byId = new ConcurrentHashMap<>();
+        int prefix = family.length() + 1;
+        redisMessageListenerContainer.addMessageListener(
+            (message, pattern) -> dispatch(byId, message, prefix), new PatternTopic(family + ":*"));
+        log.info("Subscribed to channel family {}", family);
+        return byId;
+    }
+
+    private void dispatch(Map<String, Set<Consumer<byte[]>>> byId, Message message, int prefix) {
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        if (channel.length() <= prefix) return;
+        Set<Consumer<byte[]>> handlers = byId.get(channel.substring(prefix));
+        if (handlers == null) return;
+        byte[] body = message.getBody();
+        for (Consumer<byte[]> handler : handlers) {
+            try {
+                handler.accept(body);
+            } catch (Exception e) {
+                log.warn("Stream handler for {} failed: {}", channel, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.lastmile.location.events;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.lastmile.events.proto.*;
+
+/**
+ * Encodes and decodes the protobuf payloads of the inter-service Redis channels this
+ * service uses (see events.proto). Decoders read straight from the message body bytes and return null for a
+ * payload that does not parse, so a listener can skip it.
+ */
+public final class EventCodec {
+
+    private EventCodec() {
+    }
+
+    public static byte[] driverLocation(double latitude, double longitude, long timestamp) {
+        return DriverLocationEvent.newBuilder()
+            .setLatitude(latitude)
+            .setLongitude(longitude)
+            .setTimestamp(timestamp)
+            .build()
+            .toByteArray();
+    }
+
+    public static DriverLocationEvent decodeDriverLocation(byte[] body) {
+        try {
+            return DriverLocationEvent.parseFrom(body);
+        } catch (InvalidProtocolBufferException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.lastmile.location.events;
+
+import com.lastmile.location.proto.DriverLocation;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes driver locations to monitorDriverLocation streams without letting a slow client
+ * queue them up.
+ *
+ * Each stream holds only the newest location not yet sent; a newer fix replaces it. A
+ * location is sent when the transport is ready ({@code isReady()}, resumed from the
+ * on-ready handler) and at most {@code max-pushes-per-second} times per stream, so a
+ * subscriber costs one pending location however far behind it is.
+ */
+@Component
+public class LocationFanout {
+
+    private static final Logger log = LoggerFactory.getLogger(LocationFanout.class);
+
+    @Value("${location.monitor.max-pushes-per-second:2}")
+    private double maxPushesPerSecond;
+
+    // Only sends a stream's pending location once its rate limit allows it
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "location-fanout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Must be called from the RPC method, before it returns, so the on-ready handler is set. */
+    public Stream open(ServerCallStreamObserver<DriverLocation> observer) {
+        long minIntervalMs = maxPushesPerSecond > 0 ? (long) (1000 / maxPushesPerSecond) : 0;
+        Stream stream = new Stream(observer, minIntervalMs);
+        observer.setOnReadyHandler(stream::drain);
+        return stream;
+    }
+
+    @jakarta.annotation.PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    public final class Stream {
+        private final ServerCallStreamObserver<DriverLocation> observer;
+        private final long minIntervalMs;
+
+        private DriverLocation pending;
+        private long lastSentAt;
+        private boolean timerSet;
+        private boolean closed;
+
+        private Stream(ServerCallStreamObserver<DriverLocation> observer, long minIntervalMs) {
+            this.observer = observer;
+            this.minIntervalMs = minIntervalMs;
+        }
+
+        public void offer(DriverLocation location) {
+            synchronized (this) {
+                pending = location;
+            }
+            drain();
+        }
+
+        public synchronized void close() {
+            closed = true;
+            pending = null;
+        }
+
+        private synchronized void drain() {
+            if (closed || pending == null || !observer.isReady()) return;
+            long now = System.currentTimeMillis();
+            long wait = lastSentAt + minIntervalMs - now;
+            if (wait > 0) {
+                if (!timerSet) {
+                    timerSet = true;
+                    timer.schedule(this::fire, wait, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+            try {
+                observer.onNext(pending);
+            } catch (Exception e) {
+                log.debug("Location push failed, closing stream: {}", e.getMessage());
+                closed = true;
+            }
+            pending = null;
+            lastSentAt = now;
+        }
+
+        private void fire() {
+            synchronized (this) {
+                timerSet = false;
+            }
+            drain();
+        }
+    }
+}
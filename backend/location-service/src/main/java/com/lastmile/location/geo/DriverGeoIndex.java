@@ -0,0 +1,96 @@
+package com.lastmile.location.geo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Metrics;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.domain.geo.GeoReference;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Redis GEO index of driver positions, written by LocationWriter next to each driver's
+ * location key, so nearby queries are a single GEOSEARCH instead of a KEYS scan.
+ *
+ * GEO members cannot expire, so a sorted set scored by last update time tracks them and
+ * {@link #prune} removes drivers that have not reported within {@link #TTL_MS} (the same
+ * lifetime as the location key). Pruning is a Lua script, so a driver reporting while it
+ * runs is either pruned before the report or kept whole, never left without a position.
+ */
+@Component
+public class DriverGeoIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(DriverGeoIndex.class);
+
+    public static final String GEO_KEY = "driver-locations";
+    public static final String SEEN_KEY = "driver-locations:seen";
+
+    public static final long TTL_MS = 3600 * 1000;
+
+    private static final int PRUNE_BATCH = 500;
+
+    // Drops up to ARGV[2] members of KEYS[2] scored at or below ARGV[1] from both sets
+    private static final RedisScript<Long> PRUNE = new DefaultRedisScript<>(
+        "local stale = redis.call('ZRANGEBYSCORE', KEYS[2], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2]) " +
+        "for _, member in ipairs(stale) do " +
+        "  redis.call('ZREM', KEYS[1], member) " +
+        "  redis.call('ZREM', KEYS[2], member) " +
+        "end " +
+        "return #stale",
+        Long.class);
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    public record Nearby(String driverId, double latitude, double longitude, double distanceKm) {
+    }
+
+    /** Drivers within {@code radiusKm}, nearest first, at most {@code limit} of them. */
+    public List<Nearby> search(double latitude, double longitude, double radiusKm, int limit) {
+        RedisGeoCommands.GeoSearchCommandArgs args = RedisGeoCommands.GeoSearchCommandArgs.newGeoSearchArgs()
+            .includeCoordinates()
+            .includeDistance()
+            .sortAscending()
+            .limit(limit);
+        GeoResults<RedisGeoCommands.GeoLocation<String>> results = redisTemplate.opsForGeo().search(GEO_KEY,
+            GeoReference.fromCoordinate(longitude, latitude), new Distance(radiusKm, Metrics.KILOMETERS), args);
+
+        List<Nearby> nearby = new ArrayList<>();
+        if (results == null) return nearby;
+        for (GeoResult<RedisGeoCommands.GeoLocation<String>> result : results) {
+            Point point = result.getContent().getPoint();
+            nearby.add(new Nearby(result.getContent().getName(), point.getY(), point.getX(), result.getDistance().getValue()));
+        }
+        return nearby;
+    }
+
+    @Scheduled(fixedDelay = 30000)
+    public void prune() {
+        String cutoff = String.valueOf(System.currentTimeMillis() - TTL_MS);
+        try {
+            // In batches, so one run never blocks Redis for long
+            long pruned = 0;
+            Long removed;
+            do {
+                removed = redisTemplate.execute(PRUNE, List.of(GEO_KEY, SEEN_KEY), cutoff, String.valueOf(PRUNE_BATCH));
+                pruned += removed != null ? removed : 0;
+            } while (removed != null && removed == PRUNE_BATCH);
+            if (pruned > 0) {
+                log.debug("Pruned {} stale drivers from {}", pruned, GEO_KEY);
+            }
+        } catch (Exception e) {
+            log.warn("Pruning {} failed: {}", GEO_KEY, e.getMessage());
+        }
+    }
+}
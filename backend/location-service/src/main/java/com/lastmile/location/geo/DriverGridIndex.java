@@ -0,0 +1,107 @@
+package com.lastmile.location.geo;
+
+import com.lastmile.events.proto.DriverLocationEvent;
+import com.lastmile.location.events.EventCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Local copy of driver positions in a {@link SpatialGrid}, so nearby queries run in-process
+ * instead of a GEOSEARCH round trip. Enabled with {@code location.grid.enabled}.
+ *
+ * Every replica feeds its grid from the driver-location publishes of the write path, so it
+ * sees fixes written by any replica. On startup it subscribes first and then loads the
+ * Redis geo index, which stays the source of truth; the grid never writes back.
+ */
+@Component
+@ConditionalOnProperty(name = "location.grid.enabled", havingValue = "true")
+public class DriverGridIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(DriverGridIndex.class);
+
+    private static final int WARM_BATCH = 1000;
+    private static final String CHANNEL_PREFIX = "driver-location:";
+
+    @Value("${location.grid.cell-degrees:0.01}")
+    private double cellDegrees;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    // Listens to the whole family itself; ChannelMultiplexer only routes by subscribed ID
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private SpatialGrid grid;
+
+    @jakarta.annotation.PostConstruct
+    public void start() {
+        grid = new SpatialGrid(cellDegrees, DriverGeoIndex.TTL_MS);
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+            DriverLocationEvent event = EventCodec.decodeDriverLocation(message.getBody());
+            if (event != null && channel.length() > CHANNEL_PREFIX.length()) {
+                grid.update(channel.substring(CHANNEL_PREFIX.length()),
+                    event.getLatitude(), event.getLongitude(), event.getTimestamp());
+            }
+        }, new PatternTopic(CHANNEL_PREFIX + "*"));
+        try {
+            warm();
+        } catch (Exception e) {
+            // Filled by live updates instead; drivers report every few seconds
+            log.warn("Could not load driver positions from Redis: {}", e.getMessage());
+        }
+    }
+
+    private void warm() {
+        Set<ZSetOperations.TypedTuple<String>> seen = redisTemplate.opsForZSet()
+            .rangeByScoreWithScores(DriverGeoIndex.SEEN_KEY, System.currentTimeMillis() - DriverGeoIndex.TTL_MS, Double.POSITIVE_INFINITY);
+        if (seen == null || seen.isEmpty()) return;
+
+        List<ZSetOperations.TypedTuple<String>> drivers = new ArrayList<>(seen);
+        for (int from = 0; from < drivers.size(); from += WARM_BATCH) {
+            List<ZSetOperations.TypedTuple<String>> batch = drivers.subList(from, Math.min(from + WARM_BATCH, drivers.size()));
+            String[] ids = batch.stream().map(ZSetOperations.TypedTuple::getValue).toArray(String[]::new);
+            List<Point> points = redisTemplate.opsForGeo().position(DriverGeoIndex.GEO_KEY, ids);
+            if (points == null) continue;
+            for (int i = 0; i < ids.length && i < points.size(); i++) {
+                Point point = points.get(i);
+                Double timestamp = batch.get(i).getScore();
+                if (point == null || timestamp == null) continue;
+                grid.update(ids[i], point.getY(), point.getX(), timestamp.longValue());
+            }
+        }
+        log.info("Loaded {} driver positions into the spatial grid", grid.size());
+    }
+
+    public List<SpatialGrid.Hit> radius(double latitude, double longitude, double radiusKm, int limit) {
+        return grid.radius(latitude, longitude, radiusKm, limit, System.currentTimeMillis());
+    }
+
+    public List<SpatialGrid.Hit> nearest(double latitude, double longitude, int k, double maxRadiusKm) {
+        return grid.nearest(latitude, longitude, k, maxRadiusKm, System.currentTimeMillis());
+    }
+
+    @Scheduled(fixedDelay = 30000)
+    public void prune() {
+        int removed = grid.prune(System.currentTimeMillis());
+        if (removed > 0) {
+            log.debug("Pruned {} stale drivers from the spatial grid", removed);
+        }
+    }
+}
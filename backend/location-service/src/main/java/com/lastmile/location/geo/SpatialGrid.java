@@ -0,0 +1,257 @@
+package com.lastmile.location.geo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory uniform grid of driver positions for radius and k-nearest queries.
+ *
+ * The world is cut into square cells of {@code cellDegrees} latitude by longitude. Each
+ * cell keeps its drivers in parallel primitive arrays (ids, lat, lon, timestamp), removed
+ * by swapping with the last slot, so a query only walks the cells around the point and
+ * allocates nothing per driver it skips. Entries older than {@code ttlMs} are ignored by
+ * queries and dropped by {@link #prune}.
+ *
+ * Thread-safe: queries share a read lock, updates take the write lock.
+ */
+public class SpatialGrid {
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final double KM_PER_DEGREE_LAT = 111.32;
+
+    private final double cellDegrees;
+    private final long ttlMs;
+
+    private final Map<Long, Cell> cells = new HashMap<>();
+    private final Map<String, Long> cellOf = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public record Hit(String driverId, double latitude, double longitude, double distanceKm) {
+    }
+
+    public SpatialGrid(double cellDegrees, long ttlMs) {
+        this.cellDegrees = cellDegrees;
+        this.ttlMs = ttlMs;
+    }
+
+    private static final class Cell {
+        String[] ids = new String[4];
+        double[] lats = new double[4];
+        double[] lons = new double[4];
+        long[] times = new long[4];
+        int size;
+
+        int indexOf(String id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i].equals(id)) return i;
+            }
+            return -1;
+        }
+
+        void put(String id, double lat, double lon, long time) {
+            int i = indexOf(id);
+            if (i < 0) {
+                if (size == ids.length) grow();
+                i = size++;
+                ids[i] = id;
+            }
+            lats[i] = lat;
+            lons[i] = lon;
+            times[i] = time;
+        }
+
+        void removeAt(int i) {
+            int last = --size;
+            ids[i] = ids[last];
+            lats[i] = lats[last];
+            lons[i] = lons[last];
+            times[i] = times[last];
+            ids[last] = null;
+        }
+
+        private void grow() {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            lats = Arrays.copyOf(lats, capacity);
+            lons = Arrays.copyOf(lons, capacity);
+            times = Arrays.copyOf(times, capacity);
+        }
+    }
+
+    /**
+     * Records the driver's position, moving it to another cell if needed. A position older
+     * than the one held is ignored, so updates may arrive out of order.
+     */
+    public void update(String driverId, double latitude, double longitude, long timestamp) {
+        long key = key(row(latitude), column(longitude));
+        lock.writeLock().lock();
+        try {
+            Long previous = cellOf.get(driverId);
+            if (previous != null) {
+                Cell cell = cells.get(previous);
+                int i = cell != null ? cell.indexOf(driverId) : -1;
+                if (i >= 0 && cell.times[i] > timestamp) return;
+                if (previous != key) removeFrom(previous, driverId);
+            }
+            cellOf.put(driverId, key);
+            cells.computeIfAbsent(key, k -> new Cell()).put(driverId, latitude, longitude, timestamp);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String driverId) {
+        lock.writeLock().lock();
+        try {
+            Long key = cellOf.remove(driverId);
+            if (key != null) removeFrom(key, driverId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return cellOf.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Drivers within {@code radiusKm}, nearest first, at most {@code limit}. */
+    public List<Hit> radius(double latitude, double longitude, double radiusKm, int limit, long now) {
+        List<Hit> hits = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            int rowSpan = (int) Math.ceil(radiusKm / KM_PER_DEGREE_LAT / cellDegrees);
+            int columnSpan = (int) Math.ceil(radiusKm / kmPerDegreeLon(latitude) / cellDegrees);
+            if ((2L * rowSpan + 1) * (2L * columnSpan + 1) > cells.size()) {
+                // Fewer occupied cells than cells in range: walking them all is cheaper
+                for (Cell cell : cells.values()) {
+                    collect(cell, latitude, longitude, radiusKm, now, hits);
+                }
+            } else {
+                int row = row(latitude);
+                int column = column(longitude);
+                for (int r = row - rowSpan; r <= row + rowSpan; r++) {
+                    for (int c = column - columnSpan; c <= column + columnSpan; c++) {
+                        collect(cells.get(key(r, c)), latitude, longitude, radiusKm, now, hits);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return nearestFirst(hits, limit);
+    }
+
+    /**
+     * The {@code k} drivers nearest to the point, searching rings of cells outwards until
+     * no closer driver can remain or {@code maxRadiusKm} is covered.
+     */
+    public List<Hit> nearest(double latitude, double longitude, int k, double maxRadiusKm, long now) {
+        List<Hit> hits = new ArrayList<>();
+        if (k <= 0) return hits;
+        lock.readLock().lock();
+        try {
+            int row = row(latitude);
+            int column = column(longitude);
+            // A ring of cells at Chebyshev distance n is at least (n - 1) cells away
+            double cellKm = cellDegrees * Math.min(KM_PER_DEGREE_LAT, kmPerDegreeLon(latitude));
+            int maxRing = (int) Math.ceil(maxRadiusKm / cellKm) + 1;
+            for (int ring = 0; ring <= maxRing; ring++) {
+                if (hits.size() >= k) {
+                    hits = nearestFirst(hits, k);
+                    if (hits.get(k - 1).distanceKm() <= (ring - 1) * cellKm) break;
+                }
+                for (int r = row - ring; r <= row + ring; r++) {
+                    for (int c = column - ring; c <= column + ring; c++) {
+                        if (Math.abs(r - row) != ring && Math.abs(c - column) != ring) continue;
+                        collect(cells.get(key(r, c)), latitude, longitude, maxRadiusKm, now, hits);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return nearestFirst(hits, k);
+    }
+
+    /** Drops entries older than the TTL and empty cells. */
+    public int prune(long now) {
+        int removed = 0;
+        lock.writeLock().lock();
+        try {
+            var iterator = cells.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Cell cell = iterator.next().getValue();
+                for (int i = cell.size - 1; i >= 0; i--) {
+                    if (now - cell.times[i] >= ttlMs) {
+                        cellOf.remove(cell.ids[i]);
+                        cell.removeAt(i);
+                        removed++;
+                    }
+                }
+                if (cell.size == 0) iterator.remove();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return removed;
+    }
+
+    private void collect(Cell cell, double latitude, double longitude, double radiusKm, long now, List<Hit> hits) {
+        if (cell == null) return;
+        for (int i = 0; i < cell.size; i++) {
+            if (now - cell.times[i] >= ttlMs) continue;
+            double distance = distanceKm(latitude, longitude, cell.lats[i], cell.lons[i]);
+            if (distance <= radiusKm) {
+                hits.add(new Hit(cell.ids[i], cell.lats[i], cell.lons[i], distance));
+            }
+        }
+    }
+
+    private void removeFrom(long key, String driverId) {
+        Cell cell = cells.get(key);
+        if (cell == null) return;
+        int i = cell.indexOf(driverId);
+        if (i >= 0) cell.removeAt(i);
+        if (cell.size == 0) cells.remove(key);
+    }
+
+    private static List<Hit> nearestFirst(List<Hit> hits, int limit) {
+        hits.sort((a, b) -> Double.compare(a.distanceKm(), b.distanceKm()));
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    private int row(double latitude) {
+        return (int) Math.floor(latitude / cellDegrees);
+    }
+
+    private int column(double longitude) {
+        return (int) Math.floor(longitude / cellDegrees);
+    }
+
+    private static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+
+    private static double kmPerDegreeLon(double latitude) {
+        // Floor keeps the column span finite near the poles
+        return Math.max(KM_PER_DEGREE_LAT * Math.cos(Math.toRadians(latitude)), 1.0);
+    }
+
+    static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                   Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+                   Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return EARTH_RADIUS_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+}
@@ -1,12 +1,20 @@
 package com.lastmile.location.grpc;
 
+import com.lastmile.events.proto.DriverLocationEvent;
+import com.lastmile.location.events.ChannelMultiplexer;
+import com.lastmile.location.events.EventCodec;
+import com.lastmile.location.events.LocationFanout;
+import com.lastmile.location.geo.DriverGeoIndex;
+import com.lastmile.location.geo.DriverGridIndex;
+import com.lastmile.location.geo.SpatialGrid;
+import com.lastmile.location.ingest.LocationBatcher;
+import com.lastmile.location.ingest.LocationWriter;
 import com.lastmile.location.proto.*;
 import io.grpc.stub.StreamObserver;
 import net.devh.boot.grpc.server.service.GrpcService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -17,12 +25,26 @@ public class LocationGrpcService extends LocationServiceGrpc.LocationServiceImpl
     private static final Logger log = LoggerFactory.getLogger(LocationGrpcService.class);
     
     @Autowired
-    private RedisTemplate<String, String> redisTemplate;
+    private ChannelMultiplexer channels;
 
     @Autowired
-    private org.springframework.data.redis.listener.RedisMessageListenerContainer redisMessageListenerContainer;
+    private LocationFanout locationFanout;
+
+    @Autowired
+    private DriverGeoIndex geoIndex;
+
+    // Present when location.grid.enabled is set
+    @Autowired(required = false)
+    private DriverGridIndex gridIndex;
+
+    @Autowired
+    private LocationBatcher locationBatcher;
+
+    @Autowired
+    private LocationWriter locationWriter;
     
-    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final int DEFAULT_NEARBY_LIMIT = 100;
+    private static final double NEAREST_MAX_RADIUS_KM = 50.0;
     
     @Override
     public void updateLocation(UpdateLocationRequest request,
@@ -31,19 +53,8 @@ public class LocationGrpcService extends LocationServiceGrpc.LocationServiceImpl
         double latitude = request.getLatitude();
         double longitude = request.getLongitude();
         
-        String key = "location:" + driverId;
-        Map<String, String> locationData = new HashMap<>();
-        locationData.put("latitude", String.valueOf(latitude));
-        locationData.put("longitude", String.valueOf(longitude));
-        locationData.put("timestamp", String.valueOf(System.currentTimeMillis()));
-        
-        redisTemplate.opsForHash().putAll(key, locationData);
-        redisTemplate.expire(key, java.time.Duration.ofHours(1));
-
-        // Publish to Redis Channel for streaming
-        String channel = "driver-location:" + driverId;
-        String message = latitude + "," + longitude;
-        redisTemplate.convertAndSend(channel, message);
+        // Location, TTL, geo index and the driver-location publish in one round trip
+        locationWriter.write(new LocationWriter.Fix(driverId, latitude, longitude, System.currentTimeMillis()));
         
         UpdateLocationResponse response = UpdateLocationResponse.newBuilder()
                 .setSuccess(true)
@@ -54,40 +65,74 @@ public class LocationGrpcService extends LocationServiceGrpc.LocationServiceImpl
         responseObserver.onCompleted();
     }
 
+    @Override
+    public StreamObserver<UpdateLocationRequest> streamLocations(StreamObserver<StreamLocationsResponse> responseObserver) {
+        // Auth ran once for the whole stream; each fix is just handed to the batcher
+        return new StreamObserver<>() {
+            private String driverId;
+            private int accepted;
+            private boolean failed;
+
+            @Override
+            public void onNext(UpdateLocationRequest fix) {
+                if (failed) return;
+                if (driverId == null) {
+                    driverId = fix.getDriverId();
+                } else if (!driverId.equals(fix.getDriverId())) {
+                    failed = true;
+                    responseObserver.onError(io.grpc.Status.INVALID_ARGUMENT
+                            .withDescription("A location stream carries fixes of one driver")
+                            .asRuntimeException());
+                    return;
+                }
+                locationBatcher.submit(new LocationWriter.Fix(driverId, fix.getLatitude(), fix.getLongitude(),
+                        System.currentTimeMillis()));
+                accepted++;
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                log.debug("Location stream of driver {} ended: {}", driverId, t.getMessage());
+            }
+
+            @Override
+            public void onCompleted() {
+                if (failed) return;
+                responseObserver.onNext(StreamLocationsResponse.newBuilder()
+                        .setSuccess(true)
+                        .setMessage("Locations received")
+                        .setAccepted(accepted)
+                        .build());
+                responseObserver.onCompleted();
+            }
+        };
+    }
+
     @Override
     public void monitorDriverLocation(MonitorDriverLocationRequest request,
                                       StreamObserver<DriverLocation> responseObserver) {
         String driverId = request.getDriverId();
-        String channel = "driver-location:" + driverId;
         
         io.grpc.stub.ServerCallStreamObserver<DriverLocation> serverObserver = 
             (io.grpc.stub.ServerCallStreamObserver<DriverLocation>) responseObserver;
 
-        org.springframework.data.redis.connection.MessageListener listener = (message, pattern) -> {
-            String body = new String(message.getBody());
-            String[] parts = body.split(",");
-            if (parts.length == 2) {
-                try {
-                    double lat = Double.parseDouble(parts[0]);
-                    double lon = Double.parseDouble(parts[1]);
-                    DriverLocation location = DriverLocation.newBuilder()
-                            .setDriverId(driverId)
-                            .setLatitude(lat)
-                            .setLongitude(lon)
-                            .build();
-                    synchronized (responseObserver) {
-                        responseObserver.onNext(location);
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
-        };
+        // Latest position only, sent when the client keeps up and within the push rate
+        LocationFanout.Stream stream = locationFanout.open(serverObserver);
 
-        redisMessageListenerContainer.addMessageListener(listener, new org.springframework.data.redis.listener.ChannelTopic(channel));
+        ChannelMultiplexer.Subscription subscription = channels.subscribe("driver-location", driverId, body -> {
+            DriverLocationEvent event = EventCodec.decodeDriverLocation(body);
+            if (event != null) {
+                stream.offer(DriverLocation.newBuilder()
+                        .setDriverId(driverId)
+                        .setLatitude(event.getLatitude())
+                        .setLongitude(event.getLongitude())
+                        .build());
+            }
+        });
 
         serverObserver.setOnCancelHandler(() -> {
-            redisMessageListenerContainer.removeMessageListener(listener);
+            subscription.cancel();
+            stream.close();
         });
     }
     
@@ -95,21 +140,16 @@ public class LocationGrpcService extends LocationServiceGrpc.LocationServiceImpl
     public void getLocation(GetLocationRequest request,
                           StreamObserver<GetLocationResponse> responseObserver) {
         String driverId = request.getDriverId();
-        String key = "location:" + driverId;
-        Map<Object, Object> locationData = redisTemplate.opsForHash().entries(key);
+        LocationWriter.Fix location = locationWriter.read(driverId);
         
         GetLocationResponse.Builder responseBuilder = GetLocationResponse.newBuilder();
         
-        if (locationData.isEmpty()) {
+        if (location == null) {
             responseBuilder.setSuccess(false);
         } else {
-            double latitude = Double.parseDouble((String) locationData.get("latitude"));
-            double longitude = Double.parseDouble((String) locationData.get("longitude"));
-            long timestamp = Long.parseLong((String) locationData.get("timestamp"));
-            
-            responseBuilder.setLatitude(latitude)
-                    .setLongitude(longitude)
-                    .setTimestamp(timestamp)
+            responseBuilder.setLatitude(location.latitude())
+                    .setLongitude(location.longitude())
+                    .setTimestamp(location.timestamp())
                     .setSuccess(true);
         }
         
@@ -123,35 +163,35 @@ public class LocationGrpcService extends LocationServiceGrpc.LocationServiceImpl
         double latitude = request.getLatitude();
         double longitude = request.getLongitude();
         double radiusKm = request.getRadiusKm();
+        int limit = request.getLimit() > 0 ? request.getLimit() : DEFAULT_NEARBY_LIMIT;
         
         List<DriverLocation> nearbyDrivers = new ArrayList<>();
-        
-        Set<String> keys = redisTemplate.keys("location:*");
-        if (keys != null) {
-            for (String key : keys) {
-                String driverId = key.replace("location:", "");
-                Map<Object, Object> locationData = redisTemplate.opsForHash().entries(key);
-                
-                if (!locationData.isEmpty()) {
-                    double driverLat = Double.parseDouble((String) locationData.get("latitude"));
-                    double driverLon = Double.parseDouble((String) locationData.get("longitude"));
-                    
-                    double distance = calculateDistance(latitude, longitude, driverLat, driverLon);
-                    if (distance <= radiusKm) {
-                        DriverLocation driverLocation = DriverLocation.newBuilder()
-                                .setDriverId(driverId)
-                                .setLatitude(driverLat)
-                                .setLongitude(driverLon)
-                                .setDistanceKm(distance)
-                                .build();
-                        nearbyDrivers.add(driverLocation);
-                    }
-                }
+        if (gridIndex != null) {
+            // Answered from the local grid, no Redis round trip
+            List<SpatialGrid.Hit> hits = radiusKm > 0
+                    ? gridIndex.radius(latitude, longitude, radiusKm, limit)
+                    : gridIndex.nearest(latitude, longitude, limit, NEAREST_MAX_RADIUS_KM);
+            for (SpatialGrid.Hit hit : hits) {
+                nearbyDrivers.add(DriverLocation.newBuilder()
+                        .setDriverId(hit.driverId())
+                        .setLatitude(hit.latitude())
+                        .setLongitude(hit.longitude())
+                        .setDistanceKm(hit.distanceKm())
+                        .build());
+            }
+        } else {
+            // One GEOSEARCH, already sorted nearest first; no radius means nearest-N as above
+            double searchKm = radiusKm > 0 ? radiusKm : NEAREST_MAX_RADIUS_KM;
+            for (DriverGeoIndex.Nearby driver : geoIndex.search(latitude, longitude, searchKm, limit)) {
+                nearbyDrivers.add(DriverLocation.newBuilder()
+                        .setDriverId(driver.driverId())
+                        .setLatitude(driver.latitude())
+                        .setLongitude(driver.longitude())
+                        .setDistanceKm(driver.distanceKm())
+                        .build());
             }
         }
         
-        nearbyDrivers.sort(Comparator.comparingDouble(DriverLocation::getDistanceKm));
-        
         FindNearbyDriversResponse response = FindNearbyDriversResponse.newBuilder()
                 .addAllDrivers(nearbyDrivers)
                 .setSuccess(true)
@@ -160,17 +200,5 @@ public class LocationGrpcService extends LocationServiceGrpc.LocationServiceImpl
         responseObserver.onNext(response);
         responseObserver.onCompleted();
     }
-    
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-        
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                   Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-                   Math.sin(dLon / 2) * Math.sin(dLon / 2);
-        
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return EARTH_RADIUS_KM * c;
-    }
 }
 
@@ -0,0 +1,85 @@
+package com.lastmile.location.ingest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects fixes from StreamLocations and writes them to Redis in pipelined batches.
+ *
+ * Only the newest fix per driver is kept between flushes; an older one that never got
+ * written would be overwritten straight away anyway. Every {@code flush-ms} the pending
+ * fixes go out through {@link LocationWriter} in pipelines of up to {@code batch-size}
+ * drivers.
+ */
+@Component
+public class LocationBatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(LocationBatcher.class);
+
+    @Value("${location.stream.flush-ms:200}")
+    private long flushMs;
+
+    @Value("${location.stream.batch-size:500}")
+    private int batchSize;
+
+    @Autowired
+    private LocationWriter locationWriter;
+
+    private final Map<String, LocationWriter.Fix> pending = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "location-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @jakarta.annotation.PostConstruct
+    public void start() {
+        flusher.scheduleWithFixedDelay(this::flush, flushMs, flushMs, TimeUnit.MILLISECONDS);
+    }
+
+    @jakarta.annotation.PreDestroy
+    public void stop() {
+        flusher.shutdown();
+        flush();
+    }
+
+    public void submit(LocationWriter.Fix fix) {
+        pending.put(fix.driverId(), fix);
+    }
+
+    void flush() {
+        if (pending.isEmpty()) return;
+        List<LocationWriter.Fix> batch = new ArrayList<>(Math.min(pending.size(), batchSize));
+        for (String driverId : pending.keySet()) {
+            LocationWriter.Fix fix = pending.remove(driverId);
+            if (fix == null) continue;
+            batch.add(fix);
+            if (batch.size() == batchSize) {
+                write(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) write(batch);
+    }
+
+    private void write(List<LocationWriter.Fix> batch) {
+        try {
+            locationWriter.writeAll(batch);
+        } catch (Exception e) {
+            // Drivers keep streaming; their next fix replaces what was lost here
+            log.warn("Failed to write {} streamed locations: {}", batch.size(), e.getMessage());
+        }
+    }
+}
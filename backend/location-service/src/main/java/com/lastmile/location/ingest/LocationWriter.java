@@ -0,0 +1,93 @@
+package com.lastmile.location.ingest;
+
+import com.lastmile.location.events.EventCodec;
+import com.lastmile.location.geo.DriverGeoIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * Writes driver locations to Redis.
+ *
+ * A location is one string key {@code loc:<driverId>} holding a packed 24-byte value
+ * (latitude, longitude, timestamp) with a TTL. A write is SET EX, GEOADD, ZADD on the
+ * geo index's seen set, and the driver-location PUBLISH, sent as one pipeline: a single
+ * round trip per fix, or per batch for StreamLocations.
+ */
+@Component
+public class LocationWriter {
+
+    public static final String KEY_PREFIX = "loc:";
+
+    private static final long LOCATION_TTL_SECONDS = 3600;
+    private static final int ENCODED_SIZE = 2 * Double.BYTES + Long.BYTES;
+
+    private static final byte[] GEO_KEY = bytes(DriverGeoIndex.GEO_KEY);
+    private static final byte[] SEEN_KEY = bytes(DriverGeoIndex.SEEN_KEY);
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    public record Fix(String driverId, double latitude, double longitude, long timestamp) {
+    }
+
+    public void write(Fix fix) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            write(connection, fix);
+            return null;
+        });
+    }
+
+    public void writeAll(Collection<Fix> fixes) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Fix fix : fixes) {
+                write(connection, fix);
+            }
+            return null;
+        });
+    }
+
+    /** The driver's last location, or null if it has none (or it expired). */
+    public Fix read(String driverId) {
+        byte[] value = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+            connection.stringCommands().get(bytes(KEY_PREFIX + driverId)));
+        return value != null ? decode(driverId, value) : null;
+    }
+
+    private static void write(RedisConnection connection, Fix fix) {
+        byte[] member = bytes(fix.driverId());
+        connection.stringCommands().set(bytes(KEY_PREFIX + fix.driverId()), encode(fix),
+            Expiration.seconds(LOCATION_TTL_SECONDS), RedisStringCommands.SetOption.upsert());
+        connection.geoCommands().geoAdd(GEO_KEY, new Point(fix.longitude(), fix.latitude()), member);
+        connection.zSetCommands().zAdd(SEEN_KEY, fix.timestamp(), member);
+        connection.publish(bytes("driver-location:" + fix.driverId()),
+            EventCodec.driverLocation(fix.latitude(), fix.longitude(), fix.timestamp()));
+    }
+
+    static byte[] encode(Fix fix) {
+        return ByteBuffer.allocate(ENCODED_SIZE)
+            .putDouble(fix.latitude())
+            .putDouble(fix.longitude())
+            .putLong(fix.timestamp())
+            .array();
+    }
+
+    static Fix decode(String driverId, byte[] value) {
+        if (value.length != ENCODED_SIZE) return null;
+        ByteBuffer buffer = ByteBuffer.wrap(value);
+        return new Fix(driverId, buffer.getDouble(), buffer.getDouble(), buffer.getLong());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,121 @@
+package com.lastmile.location.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpatialGridTest {
+
+    private static final long TTL = 3600_000;
+    private static final long NOW = 1_700_000_000_000L;
+
+    // Rajiv Chowk, New Delhi
+    private static final double LAT = 28.6328;
+    private static final double LON = 77.2197;
+
+    @Test
+    void testRadius_MatchesBruteForce() {
+        SpatialGrid grid = new SpatialGrid(0.01, TTL);
+        Random random = new Random(42);
+        Map<String, double[]> drivers = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            double lat = LAT + (random.nextDouble() - 0.5) * 0.4;
+            double lon = LON + (random.nextDouble() - 0.5) * 0.4;
+            drivers.put("D" + i, new double[] { lat, lon });
+            grid.update("D" + i, lat, lon, NOW);
+        }
+
+        for (double radius : new double[] { 0.5, 2.0, 7.5 }) {
+            List<String> expected = drivers.entrySet().stream()
+                .filter(e -> SpatialGrid.distanceKm(LAT, LON, e.getValue()[0], e.getValue()[1]) <= radius)
+                .sorted(Comparator.comparingDouble(e -> SpatialGrid.distanceKm(LAT, LON, e.getValue()[0], e.getValue()[1])))
+                .map(Map.Entry::getKey)
+                .toList();
+
+            List<String> actual = grid.radius(LAT, LON, radius, Integer.MAX_VALUE, NOW).stream()
+                .map(SpatialGrid.Hit::driverId)
+                .toList();
+
+            assertEquals(expected, actual, "radius " + radius);
+        }
+    }
+
+    @Test
+    void testRadius_LimitKeepsNearest() {
+        SpatialGrid grid = new SpatialGrid(0.01, TTL);
+        grid.update("far", LAT + 0.03, LON, NOW);
+        grid.update("near", LAT + 0.001, LON, NOW);
+        grid.update("mid", LAT + 0.01, LON, NOW);
+
+        List<SpatialGrid.Hit> hits = grid.radius(LAT, LON, 10, 2, NOW);
+
+        assertEquals(List.of("near", "mid"), hits.stream().map(SpatialGrid.Hit::driverId).toList());
+        assertTrue(hits.get(0).distanceKm() < hits.get(1).distanceKm());
+    }
+
+    @Test
+    void testNearest_FindsClosestAcrossEmptyRings() {
+        SpatialGrid grid = new SpatialGrid(0.01, TTL);
+        // Nothing in the first few rings; the closest driver is ~5.5 km north
+        grid.update("north", LAT + 0.05, LON, NOW);
+        grid.update("east", LAT, LON + 0.08, NOW);
+        grid.update("far", LAT + 0.3, LON, NOW);
+
+        List<SpatialGrid.Hit> hits = grid.nearest(LAT, LON, 2, 50, NOW);
+
+        assertEquals(List.of("north", "east"), hits.stream().map(SpatialGrid.Hit::driverId).toList());
+    }
+
+    @Test
+    void testNearest_RespectsMaxRadius() {
+        SpatialGrid grid = new SpatialGrid(0.01, TTL);
+        grid.update("far", LAT + 0.3, LON, NOW); // ~33 km
+
+        assertTrue(grid.nearest(LAT, LON, 1, 10, NOW).isEmpty());
+        assertEquals(1, grid.nearest(LAT, LON, 1, 50, NOW).size());
+    }
+
+    @Test
+    void testUpdate_MovesDriverBetweenCells() {
+        SpatialGrid grid = new SpatialGrid(0.01, TTL);
+        grid.update("D1", LAT, LON, NOW);
+        grid.update("D1", LAT + 0.2, LON, NOW + 1000);
+
+        assertEquals(1, grid.size());
+        assertTrue(grid.radius(LAT, LON, 1, 10, NOW + 1000).isEmpty());
+        assertEquals(1, grid.radius(LAT + 0.2, LON, 1, 10, NOW + 1000).size());
+    }
+
+    @Test
+    void testUpdate_IgnoresOlderPosition() {
+        SpatialGrid grid = new SpatialGrid(0.01, TTL);
+        grid.update("D1", LAT, LON, NOW + 1000);
+        // Delivered late from another replica
+        grid.update("D1", LAT + 0.2, LON, NOW);
+
+        assertEquals(1, grid.radius(LAT, LON, 1, 10, NOW + 1000).size());
+    }
+
+    @Test
+    void testStaleEntries_IgnoredAndPruned() {
+        SpatialGrid grid = new SpatialGrid(0.01, TTL);
+        grid.update("stale", LAT, LON, NOW - TTL - 1);
+        grid.update("fresh", LAT, LON + 0.001, NOW);
+
+        assertEquals(List.of("fresh"), grid.radius(LAT, LON, 5, 10, NOW).stream().map(SpatialGrid.Hit::driverId).toList());
+        assertEquals(1, grid.prune(NOW));
+        assertEquals(1, grid.size());
+    }
+
+    @Test
+    void testRemove() {
+        SpatialGrid grid = new SpatialGrid(0.01, TTL);
+        grid.update("D1", LAT, LON, NOW);
+        grid.update("D2", LAT, LON, NOW);
+        grid.remove("D1");
+
+        assertEquals(List.of("D2"), grid.radius(LAT, LON, 1, 10, NOW).stream().map(SpatialGrid.Hit::driverId).toList());
+    }
+}
@@ -0,0 +1,40 @@
+package com.lastmile.location.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocationWriterTest {
+
+    @Test
+    void testEncodeDecode_RoundTrip() {
+        LocationWriter.Fix fix = new LocationWriter.Fix("D1", 28.6328, 77.2197, 1_700_000_000_123L);
+
+        byte[] encoded = LocationWriter.encode(fix);
+
+        assertEquals(24, encoded.length);
+        assertEquals(fix, LocationWriter.decode("D1", encoded));
+    }
+
+    @Test
+    void testEncodeDecode_KeepsExtremeValues() {
+        LocationWriter.Fix fix = new LocationWriter.Fix("D2", -90.0, 180.0, Long.MAX_VALUE);
+
+        assertEquals(fix, LocationWriter.decode("D2", LocationWriter.encode(fix)));
+    }
+
+    @Test
+    void testDecode_TakesDriverIdFromKey() {
+        byte[] encoded = LocationWriter.encode(new LocationWriter.Fix("D1", 1.5, 2.5, 3));
+
+        assertEquals("D9", LocationWriter.decode("D9", encoded).driverId());
+    }
+
+    @Test
+    void testDecode_WrongLengthReturnsNull() {
+        // e.g. a value written in some other format under the same key
+        assertNull(LocationWriter.decode("D1", new byte[0]));
+        assertNull(LocationWriter.decode("D1", new byte[23]));
+        assertNull(LocationWriter.decode("D1", new byte[25]));
+    }
+}
@@ -0,0 +1,54 @@
+package com.lastmile.matching.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class AsyncConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncConfig.class);
+
+    /**
+     * Runs post-match side effects (driver notification, Redis publishes, rider-service
+     * callbacks) off the gRPC thread. Bounded: when the queue is full the task is dropped
+     * and logged rather than piling up threads.
+     */
+    @Bean(name = "matchSideEffectExecutor")
+    public ThreadPoolTaskExecutor matchSideEffectExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(16);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("match-side-effect-");
+        executor.setRejectedExecutionHandler((task, pool) ->
+            log.warn("Match side-effect queue full ({} queued), dropping task", pool.getQueue().size()));
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Runs the per-driver pending matching once a DriverEventCoalescer window closes, keeping
+     * it off the Redis listener thread. Never drops work: a full queue runs the evaluation on
+     * the coalescer's timer thread instead, which slows down further flushes.
+     */
+    @Bean(name = "driverEventExecutor")
+    public ThreadPoolTaskExecutor driverEventExecutor(
+            @Value("${matching.driver-events.workers:4}") int workers) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("driver-event-");
+        executor.setRejectedExecutionHandler(new java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
+}
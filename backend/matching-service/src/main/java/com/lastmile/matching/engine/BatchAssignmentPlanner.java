@@ -0,0 +1,89 @@
+package com.lastmile.matching.engine;
+
+import com.lastmile.driver.proto.DriverInfo;
+import com.lastmile.matching.fare.HaversineDistanceModel;
+import com.lastmile.matching.model.Match;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiPredicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Plans one station's batch: assigns the requests collected during a window to the
+ * available drivers at minimum total cost instead of first-fit.
+ *
+ * Every free seat of a driver is one column of the cost matrix. A seat costs the driver's
+ * pickup distance to the station plus a small charge per seat the driver would still have
+ * spare, so cars that are already partly filled are topped up before empty ones are used.
+ */
+@Component
+public class BatchAssignmentPlanner {
+
+    public static final double INFEASIBLE = 1e9;
+
+    // One spare seat weighs as much as 500 m of extra pickup distance
+    static final double SEAT_WEIGHT_KM = 0.5;
+
+    // Pickup distance assumed when the driver or station has no coordinates
+    static final double UNKNOWN_DISTANCE_KM = 5.0;
+
+    public record Assignment(Match match, DriverInfo driver) {
+    }
+
+    /**
+     * @param requests        PENDING matches at one pickup station, oldest first
+     * @param drivers         candidate drivers serving that station
+     * @param effectiveSeats  seats each driver can still take
+     * @param station         station latitude/longitude, or null when unknown
+     * @param destinationMatch (driverDestination, riderDestination) -> compatible
+     */
+    public List<Assignment> plan(List<Match> requests, List<DriverInfo> drivers,
+                                 ToIntFunction<String> effectiveSeats, double[] station,
+                                 BiPredicate<String, String> destinationMatch) {
+        List<Assignment> assignments = new ArrayList<>();
+        if (requests.isEmpty() || drivers.isEmpty()) return assignments;
+
+        List<DriverInfo> slotDriver = new ArrayList<>();
+        List<Double> slotBaseCost = new ArrayList<>();
+        for (DriverInfo driver : drivers) {
+            int seats = effectiveSeats.applyAsInt(driver.getDriverId());
+            if (seats <= 0) continue;
+            double pickupKm = pickupDistanceKm(driver, station);
+            // Never need more columns per driver than there are requests
+            for (int k = 0; k < Math.min(seats, requests.size()); k++) {
+                slotDriver.add(driver);
+                slotBaseCost.add(pickupKm + SEAT_WEIGHT_KM * (seats - 1));
+            }
+        }
+        if (slotDriver.isEmpty()) return assignments;
+
+        double[][] cost = new double[requests.size()][slotDriver.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            String riderDest = requests.get(i).getDestination();
+            for (int j = 0; j < slotDriver.size(); j++) {
+                boolean compatible = riderDest != null
+                    && destinationMatch.test(slotDriver.get(j).getDestination(), riderDest);
+                cost[i][j] = compatible ? slotBaseCost.get(j) : INFEASIBLE;
+            }
+        }
+
+        int[] assigned = HungarianSolver.solve(cost);
+        for (int i = 0; i < assigned.length; i++) {
+            int slot = assigned[i];
+            if (slot >= 0 && cost[i][slot] < INFEASIBLE) {
+                assignments.add(new Assignment(requests.get(i), slotDriver.get(slot)));
+            }
+        }
+        return assignments;
+    }
+
+    private double pickupDistanceKm(DriverInfo driver, double[] station) {
+        if (station == null || !driver.hasCurrentLocation()) return UNKNOWN_DISTANCE_KM;
+        double lat = driver.getCurrentLocation().getLatitude();
+        double lon = driver.getCurrentLocation().getLongitude();
+        if (lat == 0.0 && lon == 0.0) return UNKNOWN_DISTANCE_KM;
+        return HaversineDistanceModel.haversineKm(lat, lon, station[0], station[1]);
+    }
+}
@@ -0,0 +1,100 @@
+package com.lastmile.matching.engine;
+
+import java.util.Arrays;
+
+/**
+ * Minimum-cost rectangular assignment (Hungarian algorithm, O(n^2 * m)).
+ */
+public final class HungarianSolver {
+
+    private HungarianSolver() {
+    }
+
+    /**
+     * @param cost cost[row][col]; all rows must have the same length
+     * @return for each row the assigned column, or -1 when there are more rows than columns
+     *         and the row was left out
+     */
+    public static int[] solve(double[][] cost) {
+        int rows = cost.length;
+        if (rows == 0) return new int[0];
+        int cols = cost[0].length;
+        if (cols == 0) {
+            int[] none = new int[rows];
+            Arrays.fill(none, -1);
+            return none;
+        }
+
+        if (rows > cols) {
+            double[][] transposed = new double[cols][rows];
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    transposed[j][i] = cost[i][j];
+                }
+            }
+            int[] colToRow = solve(transposed);
+            int[] rowToCol = new int[rows];
+            Arrays.fill(rowToCol, -1);
+            for (int j = 0; j < cols; j++) {
+                rowToCol[colToRow[j]] = j;
+            }
+            return rowToCol;
+        }
+
+        // 1-indexed potentials; p[j] = row currently assigned to column j
+        double[] u = new double[rows + 1];
+        double[] v = new double[cols + 1];
+        int[] p = new int[cols + 1];
+        int[] way = new int[cols + 1];
+        double[] minv = new double[cols + 1];
+        boolean[] used = new boolean[cols + 1];
+
+        for (int i = 1; i <= rows; i++) {
+            p[0] = i;
+            int j0 = 0;
+            Arrays.fill(minv, Double.POSITIVE_INFINITY);
+            Arrays.fill(used, false);
+            do {
+                used[j0] = true;
+                int i0 = p[j0];
+                int j1 = 0;
+                double delta = Double.POSITIVE_INFINITY;
+                for (int j = 1; j <= cols; j++) {
+                    if (used[j]) continue;
+                    double cur = cost[i0 - 1][j - 1] - u[i0] - v[j];
+                    if (cur < minv[j]) {
+                        minv[j] = cur;
+                        way[j] = j0;
+                    }
+                    if (minv[j] < delta) {
+                        delta = minv[j];
+                        j1 = j;
+                    }
+                }
+                for (int j = 0; j <= cols; j++) {
+                    if (used[j]) {
+                        u[p[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (p[j0] != 0);
+            do {
+                int j1 = way[j0];
+                p[j0] = p[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+
+        int[] assignment = new int[rows];
+        Arrays.fill(assignment, -1);
+        for (int j = 1; j <= cols; j++) {
+            if (p[j] != 0) {
+                assignment[p[j] - 1] = j - 1;
+            }
+        }
+        return assignment;
+    }
+}
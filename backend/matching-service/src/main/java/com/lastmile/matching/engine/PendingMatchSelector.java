@@ -0,0 +1,58 @@
+package com.lastmile.matching.engine;
+
+import com.lastmile.driver.proto.DriverInfo;
+import com.lastmile.matching.index.DestinationCanonicalizer;
+import com.lastmile.matching.model.Match;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Picks which PENDING requests a newly available driver should take: oldest first, at one of
+ * the driver's stations, going the driver's way, until the driver's seats run out.
+ */
+public final class PendingMatchSelector {
+
+    private PendingMatchSelector() {
+    }
+
+    /**
+     * @param pending      PENDING matches, oldest first
+     * @param driverTokens the driver's canonical destination tokens
+     * @param seats        seats the driver can still take
+     */
+    public static List<Match> select(List<Match> pending, DriverInfo driver, Set<String> driverTokens, int seats) {
+        List<Match> selected = new ArrayList<>();
+        for (Match match : pending) {
+            if (selected.size() >= seats) break;
+            if (driver.getMetroStationsList().contains(match.getPickupStation())
+                    && DestinationCanonicalizer.matches(driverTokens, DestinationCanonicalizer.tokens(match.getDestination()))) {
+                selected.add(match);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Runs {@link #select} over successive pages of the driver's pending requests and hands each
+     * pick to {@code assign}, until the seats run out or the pages do. Stops early when
+     * {@code assign} returns false (no seat left on the route).
+     *
+     * @param pages PENDING matches page by page, oldest first; a page may be empty
+     * @return how many requests were assigned
+     */
+    public static int scan(Iterator<List<Match>> pages, DriverInfo driver, Set<String> driverTokens, int seats,
+                           Predicate<Match> assign) {
+        int assigned = 0;
+        while (assigned < seats && pages.hasNext()) {
+            for (Match match : select(pages.next(), driver, driverTokens, seats - assigned)) {
+                if (!assign.test(match)) return assigned;
+                assigned++;
+            }
+        }
+        return assigned;
+    }
+}
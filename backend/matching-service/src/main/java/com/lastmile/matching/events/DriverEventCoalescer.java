@@ -0,0 +1,150 @@
+package com.lastmile.matching.events;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Debounces DRIVER_AVAILABLE events per driver.
+ *
+ * Driver-service publishes one on every location update, so a driver sending GPS once a
+ * second would otherwise re-run pending matching once a second. The first event for a
+ * driver opens a window; later events in the window only replace the auth token, and the
+ * handler runs once when the window closes, on the driver event pool rather than the stream
+ * reader thread. At most one evaluation per driver runs at a time. Each event's completion
+ * callback (the stream ack) runs after the evaluation it was folded into succeeds; if the
+ * handler throws, the callbacks are dropped and the events stay pending in the stream.
+ *
+ * {@link #unchanged} lets the handler skip drivers whose route, seats and station queues are
+ * the same as at their last successful evaluation, which the handler stores with
+ * {@link #record}.
+ */
+@Component
+public class DriverEventCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(DriverEventCoalescer.class);
+
+    @Value("${matching.driver-events.window-ms:500}")
+    private long windowMs;
+
+    // Even an unchanged driver is re-evaluated this often, in case a queue change went unseen
+    @Value("${matching.driver-events.fingerprint-ttl-ms:30000}")
+    private long fingerprintTtlMs;
+
+    @Autowired
+    @Qualifier("driverEventExecutor")
+    private Executor workers;
+
+    // Only closes windows; the evaluations themselves run on the workers
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "driver-event-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Events of one driver waiting for the window to close
+    private static final class Waiting {
+        String token;
+        final List<Runnable> onHandled = new ArrayList<>();
+    }
+
+    private final Map<String, Waiting> waiting = new ConcurrentHashMap<>();
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+    private final Map<String, Evaluation> lastEvaluations = new ConcurrentHashMap<>();
+
+    private volatile BiConsumer<String, String> handler = (driverId, token) -> { };
+
+    private record Evaluation(String fingerprint, long at) {
+    }
+
+    /** Sets what runs for a driver once its window closes: (driverId, token). */
+    public void onFlush(BiConsumer<String, String> handler) {
+        this.handler = handler;
+    }
+
+    public void submit(String driverId, String token, Runnable onHandled) {
+        boolean[] opened = { false };
+        waiting.compute(driverId, (id, entry) -> {
+            if (entry == null) {
+                entry = new Waiting();
+                opened[0] = true;
+            }
+            entry.token = token;
+            if (onHandled != null) entry.onHandled.add(onHandled);
+            return entry;
+        });
+        if (opened[0]) {
+            schedule(driverId);
+        }
+    }
+
+    private void schedule(String driverId) {
+        timer.schedule(() -> workers.execute(() -> flush(driverId)), windowMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush(String driverId) {
+        if (!running.add(driverId)) {
+            // Previous evaluation still going; look again after another window
+            schedule(driverId);
+            return;
+        }
+        try {
+            Waiting entry = waiting.remove(driverId);
+            if (entry == null) return;
+            handler.accept(driverId, entry.token);
+            entry.onHandled.forEach(Runnable::run);
+        } catch (Exception e) {
+            log.error("Driver event handling failed - driverId: {}", driverId, e);
+        } finally {
+            running.remove(driverId);
+        }
+    }
+
+    /**
+     * What decides which pending requests fit a driver: route, seats, stations, and the
+     * enqueue counters of those stations' queues. A scan reads those queues to the end, so the
+     * counters cover every request it could have matched, not just the first page.
+     */
+    public static String fingerprint(String routeId, int seats, List<String> stations, List<String> queueCounts) {
+        return routeId + "|" + seats + "|" + String.join(",", stations) + "|" + String.join(",", queueCounts);
+    }
+
+    /** True if the fingerprint matches the driver's last recorded evaluation within the TTL. */
+    public boolean unchanged(String driverId, String fingerprint, long now) {
+        Evaluation previous = lastEvaluations.get(driverId);
+        return previous != null && previous.fingerprint().equals(fingerprint) && now - previous.at() < fingerprintTtlMs;
+    }
+
+    /** Stores a completed evaluation; call only once the scan it describes has succeeded. */
+    public void record(String driverId, String fingerprint, long now) {
+        lastEvaluations.put(driverId, new Evaluation(fingerprint, now));
+    }
+
+    /** Forces the next event for the driver to be evaluated in full. */
+    public void forget(String driverId) {
+        lastEvaluations.remove(driverId);
+    }
+
+    public void prune(long now) {
+        lastEvaluations.values().removeIf(evaluation -> now - evaluation.at() >= fingerprintTtlMs);
+    }
+
+    @jakarta.annotation.PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+}
@@ -0,0 +1,193 @@
+package com.lastmile.matching.events;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.stream.*;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.stream.StreamMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reads the driver-events stream through the {@value #GROUP} consumer group, so each
+ * DRIVER_AVAILABLE event is handled by one replica and nothing is lost while matching-service
+ * restarts.
+ *
+ * Records are read in batches and handed to {@link DriverEventCoalescer}; a record is acked
+ * once the evaluation it was folded into has succeeded. Records left unacked, by a failed
+ * evaluation or a replica that died, are claimed by a consumer after {@code reclaim-idle-ms},
+ * and dropped after {@code max-deliveries} attempts.
+ */
+@Component
+public class DriverEventStream {
+
+    private static final Logger log = LoggerFactory.getLogger(DriverEventStream.class);
+
+    public static final String STREAM = "driver-events";
+    public static final String GROUP = "matching-service";
+
+    // Consumers of replicas that went away, once they hold no entries
+    private static final long CONSUMER_EXPIRY_MS = 60 * 60000;
+
+    @Value("${matching.driver-events.batch-size:100}")
+    private int batchSize;
+
+    @Value("${matching.driver-events.reclaim-idle-ms:60000}")
+    private long reclaimIdleMs;
+
+    @Value("${matching.driver-events.max-deliveries:5}")
+    private int maxDeliveries;
+
+    @Autowired
+    private RedisConnectionFactory connectionFactory;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private DriverEventCoalescer driverEvents;
+
+    private final String consumerName = consumerName();
+
+    private StreamMessageListenerContainer<String, MapRecord<String, String, String>> container;
+
+    @jakarta.annotation.PostConstruct
+    public void start() {
+        createGroup();
+
+        StreamMessageListenerContainer.StreamMessageListenerContainerOptions<String, MapRecord<String, String, String>> options =
+            StreamMessageListenerContainer.StreamMessageListenerContainerOptions.builder()
+                .batchSize(batchSize)
+                .pollTimeout(Duration.ofSeconds(2))
+                .errorHandler(e -> log.warn("Reading {} failed: {}", STREAM, e.getMessage()))
+                .build();
+        container = StreamMessageListenerContainer.create(connectionFactory, options);
+        container.receive(Consumer.from(GROUP, consumerName),
+            StreamOffset.create(STREAM, ReadOffset.lastConsumed()), this::handle);
+        container.start();
+        log.info("Consuming {} as {} in group {}", STREAM, consumerName, GROUP);
+    }
+
+    @jakarta.annotation.PreDestroy
+    public void stop() {
+        if (container != null) container.stop();
+    }
+
+    private void createGroup() {
+        try {
+            redisTemplate.execute((RedisCallback<String>) connection ->
+                connection.streamCommands().xGroupCreate(STREAM.getBytes(), GROUP, ReadOffset.latest(), true));
+        } catch (Exception e) {
+            // BUSYGROUP: another replica (or an earlier start) created it
+            for (Throwable t = e; t != null; t = t.getCause()) {
+                if (String.valueOf(t.getMessage()).contains("BUSYGROUP")) return;
+            }
+            throw e;
+        }
+    }
+
+    private void handle(MapRecord<String, String, String> record) {
+        Map<String, String> fields = record.getValue();
+        String driverId = fields.get("driverId");
+        if (!"DRIVER_AVAILABLE".equals(fields.get("type")) || driverId == null || driverId.isEmpty()) {
+            ack(record.getId());
+            return;
+        }
+        String token = fields.get("token");
+        driverEvents.submit(driverId, token != null && !token.isEmpty() ? token : null, () -> ack(record.getId()));
+    }
+
+    private void ack(RecordId id) {
+        try {
+            redisTemplate.opsForStream().acknowledge(STREAM, GROUP, id);
+        } catch (Exception e) {
+            // Redelivered through reclaim; handling a driver twice is harmless
+            log.warn("Failed to ack {} on {}: {}", id, STREAM, e.getMessage());
+        }
+    }
+
+    /** Takes over events another consumer read but never acked, and forgets dead consumers. */
+    @Scheduled(fixedDelay = 30000)
+    public void reclaim() {
+        reclaimStale();
+        try {
+            for (StreamInfo.XInfoConsumer consumer : redisTemplate.opsForStream().consumers(STREAM, GROUP)) {
+                if (consumer.pendingCount() == 0 && consumer.idleTimeMs() > CONSUMER_EXPIRY_MS) {
+                    redisTemplate.opsForStream().deleteConsumer(STREAM, Consumer.from(GROUP, consumer.consumerName()));
+                }
+            }
+        } catch (Exception e) {
+            log.debug("Consumer cleanup on {} failed: {}", STREAM, e.getMessage());
+        }
+    }
+
+    private void reclaimStale() {
+        // Walk the whole pending list a page at a time; idle entries may sit behind fresh ones
+        Range<String> range = Range.unbounded();
+        int reclaimed = 0;
+        while (true) {
+            PendingMessages pending;
+            try {
+                pending = redisTemplate.opsForStream().pending(STREAM, GROUP, range, batchSize);
+            } catch (Exception e) {
+                log.warn("Failed to read pending entries of {}: {}", STREAM, e.getMessage());
+                break;
+            }
+            if (pending.isEmpty()) break;
+
+            reclaimed += reclaimPage(pending);
+            if (pending.size() < batchSize) break;
+            RecordId last = pending.get(pending.size() - 1).getId();
+            range = Range.rightUnbounded(Range.Bound.inclusive(last.getTimestamp() + "-" + (last.getSequence() + 1)));
+        }
+        if (reclaimed > 0) {
+            log.info("Reclaimed {} {} entries", reclaimed, STREAM);
+        }
+    }
+
+    private int reclaimPage(PendingMessages pending) {
+        List<RecordId> stale = new ArrayList<>();
+        for (PendingMessage message : pending) {
+            if (message.getElapsedTimeSinceLastDelivery().toMillis() < reclaimIdleMs) continue;
+            if (message.getTotalDeliveryCount() >= maxDeliveries) {
+                log.warn("Dropping {} entry {} after {} deliveries", STREAM, message.getId(), message.getTotalDeliveryCount());
+                ack(message.getId());
+            } else {
+                stale.add(message.getId());
+            }
+        }
+        if (stale.isEmpty()) return 0;
+
+        List<MapRecord<String, Object, Object>> claimed = redisTemplate.opsForStream()
+            .claim(STREAM, GROUP, consumerName, Duration.ofMillis(reclaimIdleMs), stale.toArray(new RecordId[0]));
+        for (MapRecord<String, Object, Object> record : claimed) {
+            Map<String, String> fields = new java.util.HashMap<>();
+            record.getValue().forEach((key, value) -> fields.put(String.valueOf(key), String.valueOf(value)));
+            handle(StreamRecords.newRecord().in(STREAM).withId(record.getId()).ofMap(fields));
+        }
+        return claimed.size();
+    }
+
+    private static String consumerName() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "matching";
+        }
+        // Unique per process, so a restarted pod never inherits a dead consumer's entries by name
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,56 @@
+package com.lastmile.matching.events;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.lastmile.events.proto.*;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes and decodes the protobuf payloads of the inter-service Redis channels this
+ * service uses (see events.proto). Decoders read straight from the message body bytes and return null for a
+ * payload that does not parse, so a listener can skip it.
+ */
+public final class EventCodec {
+
+    private EventCodec() {
+    }
+
+    public static byte[] matchStatus(String matchId, String status, String driverId, String tripId, int fare) {
+        return MatchStatusEvent.newBuilder()
+            .setMatchId(matchId)
+            .setStatus(status)
+            .setDriverId(driverId != null ? driverId : "")
+            .setTripId(tripId != null ? tripId : "")
+            .setFare(fare)
+            .build()
+            .toByteArray();
+    }
+
+    public static byte[] matchRequest(String matchId, String riderId, String pickupStation, String destination, int fare) {
+        return DriverDashboardEvent.newBuilder()
+            .setMatchRequest(MatchRequestEvent.newBuilder()
+                .setMatchId(matchId)
+                .setRiderId(riderId)
+                .setPickupStation(pickupStation)
+                .setDestination(destination)
+                .setFare(fare))
+            .build()
+            .toByteArray();
+    }
+
+    public static MatchStatusEvent decodeMatchStatus(byte[] body) {
+        try {
+            return MatchStatusEvent.parseFrom(body);
+        } catch (InvalidProtocolBufferException e) {
+            return null;
+        }
+    }
+
+    /** Publishes an encoded payload as-is, bypassing the template's string serializers. */
+    public static void publish(RedisOperations<?, ?> redis, String channel, byte[] payload) {
+        byte[] channelBytes = channel.getBytes(StandardCharsets.UTF_8);
+        redis.execute((RedisCallback<Long>) connection -> connection.publish(channelBytes, payload));
+    }
+}
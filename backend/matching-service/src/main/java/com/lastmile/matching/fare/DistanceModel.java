@@ -0,0 +1,8 @@
+package com.lastmile.matching.fare;
+
+/**
+ * Travel distance between two points, in kilometres.
+ */
+public interface DistanceModel {
+    double distanceKm(double lat1, double lon1, double lat2, double lon2);
+}
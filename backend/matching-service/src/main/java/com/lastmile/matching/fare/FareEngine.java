@@ -0,0 +1,64 @@
+package com.lastmile.matching.fare;
+
+import com.lastmile.driver.proto.DriverInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Prices a match from the driver's pickup distance to the station:
+ * {@code max(minimum, base + perKm * km) * surge}.
+ *
+ * Station coordinates come from the in-memory table, so quoting a fare makes no RPC.
+ */
+@Component
+public class FareEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(FareEngine.class);
+
+    // Used when either end of the pickup leg has no coordinates
+    public static final int DEFAULT_FARE = 50;
+
+    private final StationCoordinateTable stationTable;
+    private final DistanceModel distanceModel;
+    private final SurgePolicy surgePolicy;
+    private final int baseFare;
+    private final int perKm;
+    private final int minimumFare;
+
+    public FareEngine(StationCoordinateTable stationTable,
+                      DistanceModel distanceModel,
+                      SurgePolicy surgePolicy,
+                      @Value("${matching.fare.base:20}") int baseFare,
+                      @Value("${matching.fare.per-km:12}") int perKm,
+                      @Value("${matching.fare.minimum:30}") int minimumFare) {
+        this.stationTable = stationTable;
+        this.distanceModel = distanceModel;
+        this.surgePolicy = surgePolicy;
+        this.baseFare = baseFare;
+        this.perKm = perKm;
+        this.minimumFare = minimumFare;
+    }
+
+    public int calculate(String pickupStation, DriverInfo driver) {
+        StationCoordinates station = stationTable.get(pickupStation);
+        if (station == null) {
+            log.warn("No coordinates for station {}, using default fare", pickupStation);
+            return DEFAULT_FARE;
+        }
+        if (!driver.hasCurrentLocation()) return DEFAULT_FARE;
+
+        double driverLat = driver.getCurrentLocation().getLatitude();
+        double driverLon = driver.getCurrentLocation().getLongitude();
+        if (driverLat == 0.0 && driverLon == 0.0) return DEFAULT_FARE;
+
+        double km = distanceModel.distanceKm(driverLat, driverLon, station.latitude(), station.longitude());
+        return quote(km, surgePolicy.multiplier(pickupStation));
+    }
+
+    public int quote(double distanceKm, double surge) {
+        double fare = Math.max(minimumFare, baseFare + perKm * distanceKm);
+        return (int) Math.round(fare * surge);
+    }
+}
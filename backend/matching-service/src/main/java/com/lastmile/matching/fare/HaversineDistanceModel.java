@@ -0,0 +1,34 @@
+package com.lastmile.matching.fare;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Great-circle distance scaled by a road factor, since drivers follow streets rather than
+ * a straight line. A factor of 1.0 gives the plain haversine distance.
+ */
+@Component
+public class HaversineDistanceModel implements DistanceModel {
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    private final double roadFactor;
+
+    public HaversineDistanceModel(@Value("${matching.fare.road-factor:1.3}") double roadFactor) {
+        this.roadFactor = roadFactor;
+    }
+
+    @Override
+    public double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        return haversineKm(lat1, lon1, lat2, lon2) * roadFactor;
+    }
+
+    public static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                   Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+                   Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return EARTH_RADIUS_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+}
@@ -0,0 +1,52 @@
+package com.lastmile.matching.fare;
+
+import com.lastmile.matching.queue.PendingMatchQueue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Surges a station's fares once its pending queue grows past a threshold: each waiting
+ * request above the threshold adds {@code step} to the multiplier, up to {@code max}.
+ * Queue depths are cached briefly so a burst of matches at one station costs one ZCARD.
+ */
+@Component
+public class QueueDepthSurgePolicy implements SurgePolicy {
+
+    private static final long DEPTH_CACHE_MS = 1000;
+
+    @Autowired
+    private PendingMatchQueue pendingQueue;
+
+    @Value("${matching.fare.surge.threshold:5}")
+    private int threshold;
+
+    @Value("${matching.fare.surge.step:0.1}")
+    private double step;
+
+    @Value("${matching.fare.surge.max:2.0}")
+    private double max;
+
+    private final Map<String, long[]> depthCache = new ConcurrentHashMap<>();
+
+    @Override
+    public double multiplier(String station) {
+        long depth = depth(station);
+        if (depth <= threshold) return 1.0;
+        return Math.min(max, 1.0 + step * (depth - threshold));
+    }
+
+    private long depth(String station) {
+        long now = System.currentTimeMillis();
+        long[] cached = depthCache.get(station);
+        if (cached != null && now - cached[1] < DEPTH_CACHE_MS) {
+            return cached[0];
+        }
+        long depth = pendingQueue.depth(station);
+        depthCache.put(station, new long[] { depth, now });
+        return depth;
+    }
+}
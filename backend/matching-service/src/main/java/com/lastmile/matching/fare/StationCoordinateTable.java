@@ -0,0 +1,78 @@
+package com.lastmile.matching.fare;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * In-memory station coordinates, so fares need no GetStationInfo call.
+ *
+ * Read from the {@code stations:geo} set station-service maintains for its nearby-station
+ * search; GetStationInfo itself is served from the {@code stations:data} hash, so this class
+ * is the other reader of the GEO key. Loaded at startup, reloaded when station-service
+ * announces a change on {@code station-events}, and every few minutes as a safety net.
+ */
+@Component
+public class StationCoordinateTable {
+
+    private static final Logger log = LoggerFactory.getLogger(StationCoordinateTable.class);
+
+    private static final String STATIONS_GEO_KEY = "stations:geo";
+    private static final String STATION_EVENTS_CHANNEL = "station-events";
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private volatile Map<String, StationCoordinates> stations = Collections.emptyMap();
+
+    @jakarta.annotation.PostConstruct
+    public void init() {
+        reload();
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> reload(),
+            new ChannelTopic(STATION_EVENTS_CHANNEL));
+    }
+
+    @Scheduled(fixedRate = 300000)
+    public void reload() {
+        try {
+            Set<String> members = redisTemplate.opsForZSet().range(STATIONS_GEO_KEY, 0, -1);
+            if (members == null || members.isEmpty()) {
+                log.warn("No station coordinates found in {}", STATIONS_GEO_KEY);
+                return;
+            }
+
+            List<String> ids = new ArrayList<>(members);
+            List<Point> points = redisTemplate.opsForGeo().position(STATIONS_GEO_KEY, ids.toArray(new String[0]));
+            Map<String, StationCoordinates> loaded = new HashMap<>(ids.size() * 2);
+            for (int i = 0; i < ids.size() && points != null && i < points.size(); i++) {
+                Point point = points.get(i);
+                if (point != null) {
+                    loaded.put(ids.get(i), new StationCoordinates(ids.get(i), point.getY(), point.getX()));
+                }
+            }
+            stations = loaded;
+            log.info("Loaded coordinates for {} stations", loaded.size());
+        } catch (Exception e) {
+            log.error("Failed to load station coordinates", e);
+        }
+    }
+
+    public StationCoordinates get(String stationId) {
+        return stations.get(stationId);
+    }
+
+    public int size() {
+        return stations.size();
+    }
+}
@@ -0,0 +1,4 @@
+package com.lastmile.matching.fare;
+
+public record StationCoordinates(String stationId, double latitude, double longitude) {
+}
@@ -0,0 +1,8 @@
+package com.lastmile.matching.fare;
+
+/**
+ * Fare multiplier for a pickup station (1.0 = no surge).
+ */
+public interface SurgePolicy {
+    double multiplier(String station);
+}
@@ -0,0 +1,37 @@
+package com.lastmile.matching.grpc;
+
+import com.lastmile.events.proto.MatchStatusEvent;
+import com.lastmile.matching.events.EventCodec;
+import com.lastmile.matching.proto.MatchStatus;
+import com.lastmile.matching.proto.MonitorMatchStatusResponse;
+
+/**
+ * Turns {@code match-status:<riderId>} channel payloads ({@link MatchStatusEvent}) into
+ * MonitorMatchStatus stream updates.
+ */
+public final class MatchStatusMessages {
+
+    private MatchStatusMessages() {
+    }
+
+    /**
+     * The stream update for a channel message, or null if the message is malformed.
+     * Unknown statuses map to PENDING.
+     */
+    public static MonitorMatchStatusResponse parse(byte[] body) {
+        MatchStatusEvent event = EventCodec.decodeMatchStatus(body);
+        if (event == null || event.getMatchId().isEmpty()) return null;
+
+        MatchStatus status = MatchStatus.PENDING;
+        try { status = MatchStatus.valueOf(event.getStatus()); } catch (Exception e) {}
+
+        return MonitorMatchStatusResponse.newBuilder()
+                .setMatchId(event.getMatchId())
+                .setStatus(status)
+                .setDriverId(event.getDriverId())
+                .setTripId(event.getTripId())
+                .setFare(event.getFare())
+                .setSuccess(true)
+                .build();
+    }
+}
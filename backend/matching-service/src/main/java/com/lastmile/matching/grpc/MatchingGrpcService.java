@@ -1,10 +1,28 @@
 package com.lastmile.matching.grpc;
 
+import com.lastmile.matching.engine.BatchAssignmentPlanner;
+import com.lastmile.matching.engine.PendingMatchSelector;
+import com.lastmile.matching.events.ChannelMultiplexer;
+import com.lastmile.matching.events.DriverEventCoalescer;
+import com.lastmile.matching.events.EventCodec;
+import com.lastmile.matching.fare.FareEngine;
+import com.lastmile.matching.fare.StationCoordinateTable;
+import com.lastmile.matching.fare.StationCoordinates;
+import com.lastmile.matching.index.DestinationCanonicalizer;
+import com.lastmile.matching.index.DriverAvailabilityIndex;
+import com.lastmile.matching.ledger.SeatLedger;
+import com.lastmile.matching.shard.ShardForwardingInterceptor;
+import com.lastmile.matching.shard.ShardMembership;
+import com.lastmile.matching.shard.ShardRouter;
 import com.lastmile.matching.model.Match;
+import com.lastmile.matching.outbox.MatchTransitions;
+import com.lastmile.matching.outbox.OutboxRelay;
+import com.lastmile.matching.outbox.ServiceCredential;
 import com.lastmile.matching.proto.*;
+import com.lastmile.matching.queue.MatchDeadlineQueue;
+import com.lastmile.matching.queue.PendingMatchQueue;
 import com.lastmile.matching.repository.MatchRepository;
 import com.lastmile.driver.proto.*;
-import com.lastmile.station.proto.*;
 import com.lastmile.trip.proto.*;
 import com.lastmile.notification.proto.*;
 import com.lastmile.rider.proto.*;
@@ -17,8 +35,11 @@ import net.devh.boot.grpc.server.service.GrpcService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.query.Update;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @GrpcService
 public class MatchingGrpcService extends MatchingServiceGrpc.MatchingServiceImplBase {
@@ -34,20 +55,80 @@ public class MatchingGrpcService extends MatchingServiceGrpc.MatchingServiceImpl
     @Autowired
     private org.springframework.data.redis.listener.RedisMessageListenerContainer redisMessageListenerContainer;
 
+    @Autowired
+    private DriverAvailabilityIndex driverIndex;
+
+    @Autowired
+    private PendingMatchQueue pendingQueue;
+
+    @Autowired
+    private BatchAssignmentPlanner batchPlanner;
+
+    @Autowired
+    private MatchDeadlineQueue deadlineQueue;
+
+    // A MATCHED match not accepted within this long goes back to PENDING
+    private static final long MATCH_TIMEOUT_MS = 45000;
+
+    // Refreshed DriverInfo (protobuf bytes) from whichever replica handled the driver's event
+    private static final String DRIVER_INDEX_CHANNEL = "driver-index";
+
+    // An accept whose trip creation never finished (crashed replica) can be retried after this
+    private static final long CONFIRM_STALE_MS = 30000;
+
+    // Stale CONFIRMING matches settled per sweep, and the bound on each trip lookup
+    private static final int CONFIRM_SWEEP_BATCH = 20;
+    private static final long TRIP_LOOKUP_DEADLINE_MS = 5000;
+
+    // Requests read per station per page while paging through the pending queues
+    private static final int PENDING_PAGE_SIZE = 100;
+
+    // Batched mode: requests and driver events only mark their station; runBatchMatching
+    // assigns each marked station's queue in one go at the end of the window.
+    @Value("${matching.batch.enabled:false}")
+    private boolean batchEnabled;
+
+    // station -> most recent caller token seen for it (downstream services require auth)
+    private final Map<String, String> batchStations = new ConcurrentHashMap<>();
+
     @GrpcClient("driver-service")
     private DriverServiceGrpc.DriverServiceBlockingStub driverStub;
     
     @GrpcClient("trip-service")
     private TripServiceGrpc.TripServiceBlockingStub tripStub;
 
-    @GrpcClient("station-service")
-    private StationServiceGrpc.StationServiceBlockingStub stationStub;
+    // Status changes are compare-and-set; their side effects go through the match outbox
+    @Autowired
+    private MatchTransitions matchTransitions;
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    // Lets the CONFIRMING sweep look up trips with no caller behind it
+    @Autowired
+    private ServiceCredential serviceCredential;
+
+    @Autowired
+    private DriverEventCoalescer driverEvents;
+
+    // One pattern subscription per channel family, shared by all open monitor streams
+    @Autowired
+    private ChannelMultiplexer channels;
+
+    @Autowired
+    private FareEngine fareEngine;
+
+    @Autowired
+    private SeatLedger seatLedger;
 
-    @GrpcClient("notification-service")
-    private NotificationServiceGrpc.NotificationServiceBlockingStub notificationStub;
+    @Autowired
+    private ShardMembership shards;
 
-    @GrpcClient("rider-service")
-    private RiderServiceGrpc.RiderServiceBlockingStub riderStub;
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private StationCoordinateTable stationTable;
 
     private <T extends AbstractStub<T>> T attachToken(T stub) {
         String token = AuthInterceptor.AUTH_TOKEN_KEY.get();
@@ -64,109 +145,195 @@ public class MatchingGrpcService extends MatchingServiceGrpc.MatchingServiceImpl
         return MetadataUtils.attachHeaders(stub, headers);
     }
 
-    private void publishMatchUpdate(String riderId, String matchId, String status, String driverId, String tripId, int fare) {
+    private Match.OutboxEvent matchUpdateEvent(String riderId, String matchId, String status, String driverId, String tripId, int fare) {
         String channel = "match-status:" + riderId;
-        String message = matchId + "," + status + "," + (driverId != null ? driverId : "") + "," + (tripId != null ? tripId : "") + "," + fare;
-        redisTemplate.convertAndSend(channel, message);
+        return Match.OutboxEvent.publish(channel, EventCodec.matchStatus(matchId, status, driverId, tripId, fare));
     }
 
-    private void publishDriverMatchRequest(String driverId, String matchId, String riderId, String pickup, String dest, int fare) {
+    private Match.OutboxEvent driverMatchRequestEvent(String driverId, String matchId, String riderId, String pickup, String dest, int fare) {
         String channel = "driver-dashboard:" + driverId;
-        String message = "MATCH_REQUEST," + matchId + "::" + riderId + "::" + pickup + "::" + fare + "::" + dest;
-        log.info("Publishing MATCH_REQUEST to {}: {}", channel, message);
-        redisTemplate.convertAndSend(channel, message);
+        return Match.OutboxEvent.publish(channel, EventCodec.matchRequest(matchId, riderId, pickup, dest, fare));
+    }
+
+    /** Side effects of a rider being matched with a driver. */
+    private List<Match.OutboxEvent> matchedEvents(String matchId, String riderId, String driverId, String pickup,
+                                                  String dest, int fare) {
+        return List.of(
+            Match.OutboxEvent.notifyDriver(driverId, riderId, matchId),
+            matchUpdateEvent(riderId, matchId, "MATCHED", driverId, null, fare),
+            driverMatchRequestEvent(driverId, matchId, riderId, pickup, dest, fare));
     }
 
     @jakarta.annotation.PostConstruct
     public void init() {
+        // Seats held by MATCHED matches live in the seat ledger; only their deadlines need restoring
+        List<Match> matched = matchRepository.findByStatus("MATCHED");
+        for (Match match : matched) {
+            deadlineQueue.schedule(match.getMatchId(), match.getTimestamp() + MATCH_TIMEOUT_MS);
+        }
+        log.info("Deadline queue initialised with {} MATCHED matches", matched.size());
+
+        // Re-index PENDING requests by station; ZADD is idempotent so this is safe on every start
+        List<Match> pending = matchRepository.findByStatus("PENDING");
+        for (Match match : pending) {
+            pendingQueue.enqueue(match.getPickupStation(), match.getMatchId(), requestedAt(match));
+        }
+        log.info("Pending queue initialised with {} PENDING matches", pending.size());
+
+        // DRIVER_AVAILABLE events arrive through DriverEventStream; bursts of events for one
+        // driver collapse into a single evaluation on the driver event pool
+        driverEvents.onFlush(this::processPendingMatches);
+
+        // Each event is handled by one replica; the others refresh their index from its broadcast
         redisMessageListenerContainer.addMessageListener((message, pattern) -> {
-            String body = new String(message.getBody());
-            if (body.startsWith("DRIVER_AVAILABLE")) {
-                String[] parts = body.split(",");
-                if (parts.length > 1) {
-                    String driverId = parts[1];
-                    String token = parts.length > 2 ? parts[2] : null;
-                    processPendingMatches(driverId, token);
-                }
+            try {
+                driverIndex.update(com.lastmile.driver.proto.DriverInfo.parseFrom(message.getBody()));
+            } catch (Exception e) {
+                log.warn("Ignoring malformed driver index update: {}", e.getMessage());
             }
-        }, new org.springframework.data.redis.listener.ChannelTopic("driver-events"));
+        }, new org.springframework.data.redis.listener.ChannelTopic(DRIVER_INDEX_CHANNEL));
     }
 
     private void processPendingMatches(String driverId, String token) {
-        System.out.println("DEBUG: Processing pending matches for new driver: " + driverId + " with token length: " + (token != null ? token.length() : "null"));
-        List<Match> pendingMatches = matchRepository.findByStatus("PENDING");
-        System.out.println("DEBUG: Found " + pendingMatches.size() + " pending matches total");
-        if (pendingMatches.isEmpty()) return;
+        log.debug("Processing pending matches for driver {}", driverId);
+
+        // Fetch driver info; this is also what keeps the local driver index fresh. Failures
+        // propagate, so the coalescer leaves the stream entries unacked for reclaim.
+        com.lastmile.driver.proto.GetDriverInfoResponse driverInfo = attachToken(driverStub, token).getDriverInfo(
+            com.lastmile.driver.proto.GetDriverInfoRequest.newBuilder().setDriverId(driverId).build()
+        );
+
+        if (!driverInfo.getSuccess()) {
+            log.debug("Could not fetch info for driver {}", driverId);
+            driverIndex.remove(driverId);
+            driverEvents.forget(driverId);
+            return;
+        }
+        com.lastmile.driver.proto.DriverInfo refreshed = toDriverInfo(driverInfo);
+        driverIndex.update(refreshed);
+        EventCodec.publish(redisTemplate, DRIVER_INDEX_CHANNEL, refreshed.toByteArray());
+
+        // Only this replica sees the event, so it serves all of the driver's stations. The
+        // station queues and seat ledger are shared and transitions are compare-and-set, so
+        // this is safe next to the owning replica's own matching.
+        List<String> stations = driverInfo.getMetroStationsList();
+
+        // Nothing that decides which requests fit this driver has changed since the last look.
+        // The last look paged through the whole of every station queue, so an unchanged
+        // fingerprint means no request anywhere in them is new to this driver. Counters are
+        // read before the scan, so a request queued during it changes the next one.
+        long now = System.currentTimeMillis();
+        String fingerprint = DriverEventCoalescer.fingerprint(driverInfo.getRouteId(), driverInfo.getAvailableSeats(),
+            stations, pendingQueue.enqueueCounts(stations));
+        if (driverEvents.unchanged(driverId, fingerprint, now)) {
+            log.debug("Driver {} unchanged since last evaluation, skipping pending scan", driverId);
+            return;
+        }
 
-        try {
-            // Fetch driver info
-            System.out.println("DEBUG: Fetching driver info for " + driverId);
-            com.lastmile.driver.proto.GetDriverInfoResponse driverInfo = attachToken(driverStub, token).getDriverInfo(
-                com.lastmile.driver.proto.GetDriverInfoRequest.newBuilder().setDriverId(driverId).build()
-            );
-
-            if (!driverInfo.getSuccess()) {
-                 System.out.println("DEBUG: Could not fetch info for driver " + driverId + ". Success=false");
-                 return;
+        if (batchEnabled) {
+            for (String station : stations) {
+                batchStations.put(station, token != null ? token : "");
             }
+            driverEvents.record(driverId, fingerprint, now);
+            return;
+        }
 
-            // Track available seats locally to prevent over-matching in this loop
-            int currentSeats = driverInfo.getAvailableSeats();
-            System.out.println("DEBUG: Driver " + driverId + " has " + currentSeats + " seats available.");
+        // Seats are tracked locally so one event cannot over-match the driver. The queues are
+        // paged oldest first until the seats run out, so no request on the route is out of reach.
+        com.lastmile.driver.proto.DriverInfo driver = driverIndex.get(driverId);
+        int currentSeats = driverIndex.effectiveSeats(driverId);
+        log.debug("Driver {} has {} seats available", driverId, currentSeats);
+        int assigned = PendingMatchSelector.scan(pendingPages(stations), driver, driverIndex.tokensOf(driverId),
+            currentSeats, match -> assignPendingMatch(match, driver, token));
+        log.debug("Assigned {} pending requests to driver {}", assigned, driverId);
+        driverEvents.record(driverId, fingerprint, now);
+    }
 
-            for (Match match : pendingMatches) {
-                if (currentSeats <= 0) {
-                    System.out.println("DEBUG: No more seats available for driver " + driverId + ". Stopping match loop.");
-                    break;
-                }
+    /**
+     * Moves a PENDING match to MATCHED with the given driver and fans out the notifications.
+     * Returns false, leaving the match PENDING, if the ledger has no seat left on the route;
+     * true otherwise, including when another handler got to the match first.
+     */
+    private boolean assignPendingMatch(Match match, com.lastmile.driver.proto.DriverInfo driver, String token) {
+        String driverId = driver.getDriverId();
+        String pickup = match.getPickupStation();
+        int fare = fareEngine.calculate(pickup, driver);
+        if (!reserveSeat(driver)) return false;
+        long now = System.currentTimeMillis();
 
-                String pickup = match.getPickupStation();
-                String dest = match.getDestination();
-                System.out.println("DEBUG: Checking match " + match.getMatchId() + " (Rider: " + match.getRiderId() + ")");
-                
-                // Check if this driver matches
-                boolean stationMatch = driverInfo.getMetroStationsList().contains(pickup);
-                
-                String driverDest = driverInfo.getDestination().toLowerCase();
-                String matchDest = dest.toLowerCase();
-                boolean destMatch = driverDest.contains(matchDest) || matchDest.contains(driverDest);
-                
-                System.out.println("DEBUG: StationMatch: " + stationMatch + " (Driver Stations: " + driverInfo.getMetroStationsList() + ", Pickup: " + pickup + ")");
-                System.out.println("DEBUG: DestMatch: " + destMatch + " (Driver Dest: " + driverDest + ", Rider Dest: " + matchDest + ")");
+        Update update = new Update()
+            .set("driverId", driverId)
+            .set("routeId", driver.getRouteId())
+            .set("fare", fare)
+            .set("status", "MATCHED")
+            .set("timestamp", now);
+        List<Match.OutboxEvent> events = matchedEvents(match.getMatchId(), match.getRiderId(), driverId, pickup, match.getDestination(), fare);
+        Match applied;
+        try {
+            applied = matchTransitions.apply(match, update, events);
+        } catch (RuntimeException e) {
+            releaseSeat(driverId, driver.getRouteId());
+            throw e;
+        }
+        if (applied == null) {
+            // Assigned or cancelled elsewhere since it was read; the driver keeps the seat free
+            releaseSeat(driverId, driver.getRouteId());
+            return true;
+        }
+        pendingQueue.remove(pickup, match.getMatchId());
+        deadlineQueue.schedule(match.getMatchId(), now + MATCH_TIMEOUT_MS);
+        outboxRelay.dispatch(match.getMatchId(), events);
+        return true;
+    }
 
-                if (stationMatch && destMatch) {
-                    System.out.println("DEBUG: Found match for pending request " + match.getMatchId() + " with driver " + driverId);
-                    
-                    var driverInfoBuilder = com.lastmile.driver.proto.DriverInfo.newBuilder()
-                        .setDriverId(driverInfo.getDriverId());
-                    
-                    if (driverInfo.hasCurrentLocation()) {
-                        driverInfoBuilder.setCurrentLocation(driverInfo.getCurrentLocation());
-                    }
+    @org.springframework.scheduling.annotation.Scheduled(fixedDelayString = "${matching.batch.window-ms:1500}")
+    public void runBatchMatching() {
+        if (!batchEnabled || batchStations.isEmpty()) return;
 
-                    int fare = calculateFare(pickup, driverInfoBuilder.build(), token);
+        for (String station : new ArrayList<>(batchStations.keySet())) {
+            String token = batchStations.remove(station);
+            try {
+                matchStationBatch(station, token);
+            } catch (Exception e) {
+                log.error("Batch matching failed for station: {}", station, e);
+            }
+        }
+    }
 
-                    match.setDriverId(driverId);
-                    match.setFare(fare);
-                    match.setStatus("MATCHED"); // This effectively reserves the seat
-                    match.setTimestamp(System.currentTimeMillis());
-                    matchRepository.save(match);
-                    
-                    // Decrement local seat counter
-                    currentSeats--;
+    private void matchStationBatch(String station, String token) {
+        if (pendingQueue.depth(station) == 0) return;
 
-                    notifyDriver(driverId, match.getRiderId(), match.getMatchId(), token);
-                    publishMatchUpdate(match.getRiderId(), match.getMatchId(), "MATCHED", driverId, null, fare);
-                    publishDriverMatchRequest(driverId, match.getMatchId(), match.getRiderId(), pickup, dest, fare);
-                }
+        long now = System.currentTimeMillis();
+        if (!driverIndex.isWarm(station, now)) {
+            warmStation(station, now, token);
+        }
+        List<com.lastmile.driver.proto.DriverInfo> drivers = driverIndex.candidates(station, now);
+        if (drivers.isEmpty()) return;
+
+        StationCoordinates stationCoordinates = stationTable.get(station);
+        double[] coordinates = stationCoordinates != null
+            ? new double[] { stationCoordinates.latitude(), stationCoordinates.longitude() }
+            : null;
+
+        // The queue is planned page by page, oldest first, while any candidate still has a seat
+        int assigned = 0;
+        int requests = 0;
+        Iterator<List<Match>> pages = pendingPages(List.of(station));
+        while (pages.hasNext() && drivers.stream().anyMatch(d -> driverIndex.effectiveSeats(d.getDriverId()) > 0)) {
+            List<Match> page = pages.next();
+            requests += page.size();
+            if (page.isEmpty()) continue;
+            List<BatchAssignmentPlanner.Assignment> assignments = batchPlanner.plan(
+                page, drivers, driverIndex::effectiveSeats, coordinates,
+                DestinationCanonicalizer::matches);
+            for (BatchAssignmentPlanner.Assignment assignment : assignments) {
+                if (assignPendingMatch(assignment.match(), assignment.driver(), token)) assigned++;
             }
-
-        } catch (Exception e) {
-            System.err.println("DEBUG: Error processing pending matches: " + e.getMessage());
-            e.printStackTrace();
         }
+        log.info("Batch matched {} of {} requests read at station {} across {} drivers",
+            assigned, requests, station, drivers.size());
     }
-    
+
     @Override
     public void matchRiderWithDriver(MatchRiderWithDriverRequest request,
                                     StreamObserver<MatchRiderWithDriverResponse> responseObserver) {
@@ -176,11 +343,29 @@ public class MatchingGrpcService extends MatchingServiceGrpc.MatchingServiceImpl
         String rideRequestId = request.getRideRequestId();
         
         log.info("Matching request - riderId: {}, from: {}, to: {}", riderId, metroStation, destination);
+
+        // Sharded: the replica owning the pickup station does the matching
+        String owner = ShardForwardingInterceptor.isForwarded() ? null : shards.ownerOf(metroStation);
+        if (owner != null) {
+            try {
+                MatchRiderWithDriverResponse forwarded = shardRouter
+                    .stubFor(owner, AuthInterceptor.AUTH_TOKEN_KEY.get())
+                    .matchRiderWithDriver(request);
+                responseObserver.onNext(forwarded);
+                responseObserver.onCompleted();
+                return;
+            } catch (Exception e) {
+                log.warn("Forwarding match request to shard {} failed, matching locally - riderId: {}", owner, riderId, e);
+            }
+        }
         
         MatchRiderWithDriverResponse.Builder responseBuilder = MatchRiderWithDriverResponse.newBuilder();
         
         try {
-            com.lastmile.driver.proto.DriverInfo matchedDriver = findDriver(metroStation, destination, null);
+            String token = AuthInterceptor.AUTH_TOKEN_KEY.get();
+
+            // In batched mode every request waits for the end of its station's window
+            com.lastmile.driver.proto.DriverInfo matchedDriver = batchEnabled ? null : findDriver(metroStation, destination, null);
             
             if (matchedDriver == null) {
                 // Save as PENDING
@@ -191,7 +376,17 @@ public class MatchingGrpcService extends MatchingServiceGrpc.MatchingServiceImpl
                 match.setDestination(destination);
                 match.setStatus("PENDING");
                 match.setTimestamp(System.currentTimeMillis());
-                matchRepository.save(match);
+                match.setRequestedAt(match.getTimestamp());
+                if (!matchTransitions.create(match, List.of())) {
+                    describeExistingMatch(rideRequestId, responseBuilder);
+                    responseObserver.onNext(responseBuilder.build());
+                    responseObserver.onCompleted();
+                    return;
+                }
+                pendingQueue.enqueue(metroStation, rideRequestId, match.getRequestedAt());
+                if (batchEnabled) {
+                    batchStations.put(metroStation, token != null ? token : "");
+                }
                 System.out.println("DEBUG: Match saved as PENDING: " + match);
                 log.info("No driver available - match queued as PENDING: riderId: {}, matchId: {}", riderId, rideRequestId);
                 responseBuilder.setMatchId(rideRequestId)
@@ -200,28 +395,53 @@ public class MatchingGrpcService extends MatchingServiceGrpc.MatchingServiceImpl
             } else {
                 String matchId = rideRequestId;
                 if (matchId == null || matchId.isEmpty()) {
+                    releaseSeat(matchedDriver.getDriverId(), matchedDriver.getRouteId());
                     responseBuilder.setSuccess(false)
                             .setMessage("ride_request_id is required");
                     responseObserver.onNext(responseBuilder.build());
                     responseObserver.onCompleted();
                     return;
                 }
-                int fare = calculateFare(metroStation, matchedDriver, null);
+                // findDriver reserved a seat: anything that fails before the match is stored gives it back
+                int fare;
+                try {
+                    fare = fareEngine.calculate(metroStation, matchedDriver);
+                } catch (RuntimeException e) {
+                    releaseSeat(matchedDriver.getDriverId(), matchedDriver.getRouteId());
+                    throw e;
+                }
                 
                 Match match = new Match();
                 match.setMatchId(matchId);
                 match.setDriverId(matchedDriver.getDriverId());
+                match.setRouteId(matchedDriver.getRouteId());
                 match.setRiderId(riderId);
                 match.setPickupStation(metroStation);
                 match.setFare(fare);
                 match.setDestination(destination);
                 match.setStatus("MATCHED");
                 match.setTimestamp(System.currentTimeMillis());
-                matchRepository.save(match);
+                match.setRequestedAt(match.getTimestamp());
 
-                notifyDriver(matchedDriver.getDriverId(), riderId, matchId, null);
-                publishMatchUpdate(riderId, matchId, "MATCHED", matchedDriver.getDriverId(), null, fare);
-                publishDriverMatchRequest(matchedDriver.getDriverId(), matchId, riderId, metroStation, destination, fare);
+                // The match and its notifications are stored in one write; delivery happens off the request thread
+                String driverId = matchedDriver.getDriverId();
+                List<Match.OutboxEvent> events = matchedEvents(matchId, riderId, driverId, metroStation, destination, fare);
+                boolean created;
+                try {
+                    created = matchTransitions.create(match, events);
+                } catch (RuntimeException e) {
+                    releaseSeat(driverId, matchedDriver.getRouteId());
+                    throw e;
+                }
+                if (!created) {
+                    releaseSeat(driverId, matchedDriver.getRouteId());
+                    describeExistingMatch(matchId, responseBuilder);
+                    responseObserver.onNext(responseBuilder.build());
+                    responseObserver.onCompleted();
+                    return;
+                }
+                deadlineQueue.schedule(matchId, match.getTimestamp() + MATCH_TIMEOUT_MS);
+                outboxRelay.dispatch(matchId, events);
                 
                 log.info("Match found - riderId: {}, driverId: {}, matchId: {}, fare: {}", 
                     riderId, matchedDriver.getDriverId(), matchId, fare);
@@ -241,41 +461,27 @@ public class MatchingGrpcService extends MatchingServiceGrpc.MatchingServiceImpl
         responseObserver.onCompleted();
     }
 
+    /** A retried request: answer with what the first attempt stored, without redoing it. */
+    private void describeExistingMatch(String matchId, MatchRiderWithDriverResponse.Builder responseBuilder) {
+        Match existing = matchRepository.findById(matchId).orElse(null);
+        responseBuilder.setMatchId(matchId)
+                .setDriverId(existing != null && existing.getDriverId() != null ? existing.getDriverId() : "")
+                .setSuccess(existing != null)
+                .setMessage("Request already received");
+    }
+
     @Override
     public void monitorMatchStatus(MonitorMatchStatusRequest request,
                                    StreamObserver<MonitorMatchStatusResponse> responseObserver) {
         String riderId = request.getRiderId();
-        String channel = "match-status:" + riderId;
         
         io.grpc.stub.ServerCallStreamObserver<MonitorMatchStatusResponse> serverObserver = 
             (io.grpc.stub.ServerCallStreamObserver<MonitorMatchStatusResponse>) responseObserver;
 
-        org.springframework.data.redis.connection.MessageListener listener = (message, pattern) -> {
-            String body = new String(message.getBody());
-            String[] parts = body.split(",");
-            if (parts.length >= 2) {
+        ChannelMultiplexer.Subscription subscription = channels.subscribe("match-status", riderId, body -> {
+            MonitorMatchStatusResponse response = MatchStatusMessages.parse(body);
+            if (response != null) {
                 try {
-                    String matchId = parts[0];
-                    String statusStr = parts[1];
-                    String driverId = parts.length > 2 ? parts[2] : "";
-                    String tripId = parts.length > 3 ? parts[3] : "";
-                    int fare = 0;
-                    if (parts.length > 4) {
-                        try { fare = Integer.parseInt(parts[4]); } catch (Exception e) {}
-                    }
-                    
-                    MatchStatus status = MatchStatus.PENDING;
-                    try { status = MatchStatus.valueOf(statusStr); } catch (Exception e) {}
-
-                    MonitorMatchStatusResponse response = MonitorMatchStatusResponse.newBuilder()
-                            .setMatchId(matchId)
-                            .setStatus(status)
-                            .setDriverId(driverId)
-                            .setTripId(tripId)
-                            .setFare(fare)
-                            .setSuccess(true)
-                            .build();
-                            
                     synchronized (responseObserver) {
                         responseObserver.onNext(response);
                     }
@@ -283,13 +489,9 @@ public class MatchingGrpcService extends MatchingServiceGrpc.MatchingServiceImpl
                     e.printStackTrace();
                 }
             }
-        };
-
-        redisMessageListenerContainer.addMessageListener(listener, new org.springframework.data.redis.listener.ChannelTopic(channel));
-
-        serverObserver.setOnCancelHandler(() -> {
-            redisMessageListenerContainer.removeMessageListener(listener);
         });
+
+        serverObserver.setOnCancelHandler(subscription::cancel);
     }
 
 
@@ -306,33 +508,24 @@ public class MatchingGrpcService extends MatchingServiceGrpc.MatchingServiceImpl
             Optional<Match> matchOpt = matchRepository.findById(matchId);
             if (matchOpt.isPresent()) {
                 Match match = matchOpt.get();
-                if (match.getStatus().equals("MATCHED") && match.getDriverId().equals(driverId)) {
-                    
-                    CreateTripRequest tripRequest = CreateTripRequest.newBuilder()
-                            .setDriverId(match.getDriverId())
-                            .setRiderId(match.getRiderId())
-                            .setPickupStation(match.getPickupStation())
-                            .setDestination(match.getDestination())
-                            .setMatchId(matchId)
-                            .setFare(match.getFare())
-                            .build();
-                    
-                    CreateTripResponse tripResponse = attachToken(tripStub).createTrip(tripRequest);
-                    
-                    if (tripResponse.getSuccess()) {
-                        match.setStatus("CONFIRMED");
-                        matchRepository.save(match);
-                        publishMatchUpdate(match.getRiderId(), matchId, "CONFIRMED", match.getDriverId(), tripResponse.getTripId(), match.getFare());
-                        
-                        log.info("Match accepted and trip created - driverId: {}, riderId: {}, tripId: {}", 
-                            driverId, match.getRiderId(), tripResponse.getTripId());
-                        
-                        responseBuilder.setSuccess(true)
-                                .setMessage("Match accepted and trip created");
+                long now = System.currentTimeMillis();
+                boolean ownDriver = driverId.equals(match.getDriverId());
+                boolean staleConfirm = "CONFIRMING".equals(match.getStatus()) && now - match.getConfirmingSince() > CONFIRM_STALE_MS;
+
+                if (ownDriver && "CONFIRMED".equals(match.getStatus())) {
+                    // Retried accept: the trip already exists
+                    responseBuilder.setSuccess(true).setMessage("Match already accepted");
+                } else if (ownDriver && "CONFIRMING".equals(match.getStatus()) && !staleConfirm) {
+                    responseBuilder.setSuccess(false).setMessage("Match acceptance already in progress");
+                } else if (ownDriver && ("MATCHED".equals(match.getStatus()) || staleConfirm)) {
+                    // Claim the match first so a concurrent accept, decline or timeout cannot also act on it
+                    Match claimed = matchTransitions.apply(match,
+                        new Update().set("status", "CONFIRMING").set("confirmingSince", now), List.of());
+                    if (claimed == null) {
+                        responseBuilder.setSuccess(false).setMessage("Match not valid for acceptance");
                     } else {
-                        log.warn("Trip creation failed for match - matchId: {}, driverId: {}", matchId, driverId);
-                        responseBuilder.setSuccess(false)
-                                .setMessage("Failed to create trip: " + tripResponse.getMessage());
+                        deadlineQueue.cancel(matchId);
+                        confirmMatch(claimed, responseBuilder);
                     }
                 } else {
                      responseBuilder.setSuccess(false).setMessage("Match not valid for acceptance");
@@ -349,6 +542,63 @@ public class MatchingGrpcService extends MatchingServiceGrpc.MatchingServiceImpl
         responseObserver.onCompleted();
     }
 
+    /**
+     * Creates the trip for a match this handler moved to CONFIRMING, then records CONFIRMED.
+     * If the trip cannot be created the match goes back to MATCHED with a fresh deadline.
+     */
+    private void confirmMatch(Match match, AcceptMatchResponse.Builder responseBuilder) {
+        String matchId = match.getMatchId();
+        String driverId = match.getDriverId();
+
+        CreateTripRequest tripRequest = CreateTripRequest.newBuilder()
+                .setDriverId(driverId)
+                .setRiderId(match.getRiderId())
+                .setPickupStation(match.getPickupStation())
+                .setDestination(match.getDestination())
+                .setMatchId(matchId)
+                .setFare(match.getFare())
+                .build();
+
+        CreateTripResponse tripResponse;
+        try {
+            tripResponse = attachToken(tripStub).createTrip(tripRequest);
+        } catch (Exception e) {
+            revertConfirming(match);
+            throw e;
+        }
+
+        if (tripResponse.getSuccess()) {
+            String tripId = tripResponse.getTripId();
+            List<Match.OutboxEvent> events = List.of(
+                matchUpdateEvent(match.getRiderId(), matchId, "CONFIRMED", driverId, tripId, match.getFare()));
+            Match confirmed = matchTransitions.apply(match,
+                new Update().set("status", "CONFIRMED").set("tripId", tripId), events);
+            if (confirmed != null) {
+                outboxRelay.dispatch(matchId, events);
+            } else {
+                log.warn("Match changed while its trip was being created - matchId: {}, tripId: {}", matchId, tripId);
+            }
+
+            log.info("Match accepted and trip created - driverId: {}, riderId: {}, tripId: {}", 
+                driverId, match.getRiderId(), tripId);
+
+            responseBuilder.setSuccess(true)
+                    .setMessage("Match accepted and trip created");
+        } else {
+            log.warn("Trip creation failed for match - matchId: {}, driverId: {}", matchId, driverId);
+            revertConfirming(match);
+            responseBuilder.setSuccess(false)
+                    .setMessage("Failed to create trip: " + tripResponse.getMessage());
+        }
+    }
+
+    private void revertConfirming(Match match) {
+        long now = System.currentTimeMillis();
+        if (matchTransitions.apply(match, new Update().set("status", "MATCHED").set("timestamp", now), List.of()) != null) {
+            deadlineQueue.schedule(match.getMatchId(), now + MATCH_TIMEOUT_MS);
+        }
+    }
+
     @Override
     public void declineMatch(DeclineMatchRequest request, StreamObserver<DeclineMatchResponse> responseObserver) {
         String matchId = request.getMatchId();
@@ -362,31 +612,46 @@ public class MatchingGrpcService extends MatchingServiceGrpc.MatchingServiceImpl
             Optional<Match> matchOpt = matchRepository.findById(matchId);
             if (matchOpt.isPresent()) {
                 Match match = matchOpt.get();
-                if (match.getStatus().equals("MATCHED") && match.getDriverId().equals(driverId)) {
+                if (match.getStatus().equals("MATCHED") && driverId.equals(match.getDriverId())) {
                     
                     // Try to find a new driver
                     com.lastmile.driver.proto.DriverInfo newDriver = findDriver(match.getPickupStation(), match.getDestination(), driverId);
                     
                     if (newDriver != null) {
                         // Update existing match with new driver
-                        match.setDriverId(newDriver.getDriverId());
-                        match.setFare(calculateFare(match.getPickupStation(), newDriver, null));
-                        match.setStatus("MATCHED"); // Reset status to MATCHED
-                        match.setTimestamp(System.currentTimeMillis()); // Update timestamp
-                        matchRepository.save(match);
-                        
-                        notifyDriver(newDriver.getDriverId(), match.getRiderId(), matchId, null);
-                        
-                        log.info("Match declined and reassigned - oldDriver: {}, newDriver: {}, matchId: {}", 
-                            driverId, newDriver.getDriverId(), matchId);
-                        
-                        responseBuilder.setSuccess(true).setMessage("Match declined, reassigned to new driver");
-                    } else {
-                        // No new driver found, cancel match
-                        match.setStatus("PENDING");
-                        matchRepository.save(match);
+                        long now = System.currentTimeMillis();
+                        Update update = new Update()
+                            .set("driverId", newDriver.getDriverId())
+                            .set("routeId", newDriver.getRouteId())
+                            .set("fare", fareEngine.calculate(match.getPickupStation(), newDriver))
+                            .set("status", "MATCHED")
+                            .set("timestamp", now);
+                        List<Match.OutboxEvent> events = List.of(
+                            Match.OutboxEvent.notifyDriver(newDriver.getDriverId(), match.getRiderId(), matchId));
+                        if (matchTransitions.apply(match, update, events) == null) {
+                            // Accepted, cancelled or timed out meanwhile
+                            releaseSeat(newDriver.getDriverId(), newDriver.getRouteId());
+                            responseBuilder.setSuccess(false).setMessage("Match not valid for decline");
+                        } else {
+                            // The declining driver's seat goes back once the match has moved on
+                            releaseSeat(match);
+                            deadlineQueue.schedule(matchId, now + MATCH_TIMEOUT_MS);
+                            outboxRelay.dispatch(matchId, events);
+                            
+                            log.info("Match declined and reassigned - oldDriver: {}, newDriver: {}, matchId: {}", 
+                                driverId, newDriver.getDriverId(), matchId);
+                            
+                            responseBuilder.setSuccess(true).setMessage("Match declined, reassigned to new driver");
+                        }
+                    } else if (matchTransitions.apply(match, new Update().set("status", "PENDING").unset("routeId"), List.of()) != null) {
+                        // No new driver found, back to the station queue
+                        releaseSeat(match);
+                        deadlineQueue.cancel(matchId);
+                        pendingQueue.enqueue(match.getPickupStation(), matchId, requestedAt(match));
                         log.warn("Match declined, no replacement driver found - matchId: {}, driverId: {}", matchId, driverId);
                         responseBuilder.setSuccess(true).setMessage("Match declined, no new driver found");
+                    } else {
+                        responseBuilder.setSuccess(false).setMessage("Match not valid for decline");
                     }
                 } else {
                     responseBuilder.setSuccess(false).setMessage("Match not valid for decline");
@@ -437,31 +702,45 @@ public class MatchingGrpcService extends MatchingServiceGrpc.MatchingServiceImpl
         CancelMatchResponse.Builder responseBuilder = CancelMatchResponse.newBuilder();
         
         try {
-            Optional<Match> matchOpt = matchRepository.findById(matchId);
-            if (matchOpt.isPresent()) {
+            boolean done = false;
+            // A lost compare-and-set means the match moved on underneath us; re-read and try again
+            for (int attempt = 0; attempt < 3 && !done; attempt++) {
+                Optional<Match> matchOpt = matchRepository.findById(matchId);
+                if (matchOpt.isEmpty()) {
+                    responseBuilder.setSuccess(false)
+                            .setMessage("Match not found");
+                    done = true;
+                    continue;
+                }
                 Match match = matchOpt.get();
-                match.setStatus("CANCELLED");
-                matchRepository.save(match);
-                publishMatchUpdate(riderId, matchId, "CANCELLED", null, null, 0);
-                responseBuilder.setSuccess(true)
-                        .setMessage("Match cancelled successfully"); 
+                if ("CANCELLED".equals(match.getStatus())) {
+                    // Retried cancel
+                    responseBuilder.setSuccess(true)
+                            .setMessage("Match cancelled successfully");
+                    done = true;
+                    continue;
+                }
 
-                // call CancelRideRequest in rider service
-                try {
-                    attachToken(riderStub).cancelRideRequest(
-                        CancelRideRequestRequest.newBuilder()
-                            .setRiderId(riderId)
-                            .build()
-                    );
-                    System.out.println("DEBUG: Called riderStub.cancelRideRequest");
-                } catch (Exception e) {
-                    System.err.println("DEBUG: Failed to cancel ride request in RiderService: " + e.getMessage());
+                List<Match.OutboxEvent> events = List.of(
+                    matchUpdateEvent(riderId, matchId, "CANCELLED", null, null, 0),
+                    // call CancelRideRequest in rider service
+                    Match.OutboxEvent.cancelRideRequest(riderId));
+                if (matchTransitions.apply(match, new Update().set("status", "CANCELLED"), events) == null) {
+                    continue;
                 }
-                
-            } 
-            else {
+                if ("MATCHED".equals(match.getStatus())) {
+                    releaseSeat(match);
+                    deadlineQueue.cancel(matchId);
+                }
+                pendingQueue.remove(match.getPickupStation(), matchId);
+                outboxRelay.dispatch(matchId, events);
+                responseBuilder.setSuccess(true)
+                        .setMessage("Match cancelled successfully"); 
+                done = true;
+            }
+            if (!done) {
                 responseBuilder.setSuccess(false)
-                        .setMessage("Match not found");
+                        .setMessage("Match is being updated, try again");
             }
             
             long duration = System.currentTimeMillis() - startTime;
@@ -479,6 +758,8 @@ public class MatchingGrpcService extends MatchingServiceGrpc.MatchingServiceImpl
     
     private com.lastmile.matching.proto.MatchStatus convertStatus(String status) {
         if (status == null) return com.lastmile.matching.proto.MatchStatus.PENDING;
+        // Trip creation in flight: still MATCHED as far as clients are concerned
+        if ("CONFIRMING".equals(status)) return com.lastmile.matching.proto.MatchStatus.MATCHED;
         try {
             return com.lastmile.matching.proto.MatchStatus.valueOf(status);
         } catch (IllegalArgumentException e) {
@@ -486,48 +767,31 @@ public class MatchingGrpcService extends MatchingServiceGrpc.MatchingServiceImpl
         }
     }
 
+    /**
+     * First candidate at the station going the rider's way with a free seat. The returned
+     * driver already has a seat reserved in the ledger for this rider.
+     */
     private com.lastmile.driver.proto.DriverInfo findDriver(String pickupStation, String destination, String excludeDriverId) {
         System.out.println("DEBUG: Finding driver for station: " + pickupStation + ", destination: " + destination);
+        long now = System.currentTimeMillis();
         try {
-            ListDriversRequest listRequest = ListDriversRequest.newBuilder()
-                .setStation(pickupStation)
-                .build();
-                
-            com.lastmile.driver.proto.ListDriversResponse listResponse = attachToken(driverStub).listDrivers(listRequest);
-            
-            if (listResponse.getSuccess()) {
-                System.out.println("DEBUG: Found " + listResponse.getDriversCount() + " drivers at station " + pickupStation);
-                for (com.lastmile.driver.proto.DriverInfo driver : listResponse.getDriversList()) {
-                    System.out.println("DEBUG: Checking driver: " + driver.getDriverId() + ", Dest: " + driver.getDestination() + ", Seats: " + driver.getAvailableSeats());
-                    
-                    String driverDest = driver.getDestination().toLowerCase();
-                    String riderDest = destination.toLowerCase();
-                    
-                    // Relaxed matching: check if one contains the other
-                    boolean destMatch = driverDest.equals(riderDest) || driverDest.contains(riderDest) || riderDest.contains(driverDest);
-                    
-                    if (destMatch && driver.getMetroStationsList().contains(pickupStation)) {
-                        
-                        // Check for PENDING matches for this driver to avoid double booking
-                        long pendingMatches = matchRepository.countByDriverIdAndStatus(driver.getDriverId(), "MATCHED");
-                        int effectiveSeats = driver.getAvailableSeats() - (int) pendingMatches;
-                        
-                        System.out.println("DEBUG: Driver " + driver.getDriverId() + " has " + pendingMatches + " pending matches. Effective seats: " + effectiveSeats);
-
-                        if (effectiveSeats > 0) {
-                            if (excludeDriverId == null || !driver.getDriverId().equals(excludeDriverId)) {
-                                System.out.println("DEBUG: >> Match found: " + driver.getDriverId());
-                                return driver;
-                            }
-                        } else {
-                            System.out.println("DEBUG: >> Driver " + driver.getDriverId() + " skipped due to no effective seats.");
-                        }
-                    } else {
-                         System.out.println("DEBUG: >> Driver " + driver.getDriverId() + " did not match. DestMatch: " + destMatch);
-                    }
+            if (!driverIndex.isWarm(pickupStation, now)) {
+                warmStation(pickupStation, now, null);
+            }
+
+            // Probe the station's destination-token index; every candidate already matches
+            Set<String> destinationTokens = DestinationCanonicalizer.tokens(destination);
+            for (com.lastmile.driver.proto.DriverInfo driver : driverIndex.candidates(pickupStation, destinationTokens, now)) {
+                if (excludeDriverId != null && driver.getDriverId().equals(excludeDriverId)) {
+                    continue;
+                }
+
+                // The index only skips drivers known to be full; the ledger reservation decides
+                int effectiveSeats = driverIndex.effectiveSeats(driver.getDriverId());
+                if (effectiveSeats > 0 && reserveSeat(driver)) {
+                    System.out.println("DEBUG: >> Match found: " + driver.getDriverId() + ", effective seats: " + effectiveSeats);
+                    return driver;
                 }
-            } else {
-                System.out.println("DEBUG: ListDrivers failed: " + listResponse.getSuccess());
             }
         } catch (Exception e) {
             System.err.println("DEBUG: Error finding driver: " + e.getMessage());
@@ -536,75 +800,213 @@ public class MatchingGrpcService extends MatchingServiceGrpc.MatchingServiceImpl
         return null;
     }
 
-    private int calculateFare(String pickupStation, com.lastmile.driver.proto.DriverInfo driver, String token) {
-        int fare = 50;
-        try {
-            GetStationInfoResponse stationInfo = attachToken(stationStub, token).getStationInfo(
-                GetStationInfoRequest.newBuilder().setStationId(pickupStation).build()
-            );
-            
-            if (stationInfo.getSuccess() && driver.hasCurrentLocation()) {
-                double stationLat = stationInfo.getStation().getLatitude();
-                double stationLon = stationInfo.getStation().getLongitude();
-                double driverLat = driver.getCurrentLocation().getLatitude();
-                double driverLon = driver.getCurrentLocation().getLongitude();
-                System.out.println("DEBUG: Driver location: " + driverLat + ", " + driverLon);
-                System.out.println("DEBUG: Station location: " + stationLat + ", " + stationLon);
-                if (driverLat == 0.0 && driverLon == 0.0) {
-                    System.out.println("DEBUG: Driver location is (0,0). Using default fallback fare.");
-                    return 50; // Fallback default
-                }
+    private boolean reserveSeat(com.lastmile.driver.proto.DriverInfo driver) {
+        long free = seatLedger.reserve(driver.getRouteId(), driver.getAvailableSeats());
+        driverIndex.recordFreeSeats(driver.getDriverId(), driver.getRouteId(), free);
+        return free >= 0;
+    }
+
+    /** Queue position of a request; matches stored before requestedAt existed fall back to timestamp. */
+    private static long requestedAt(Match match) {
+        return match.getRequestedAt() > 0 ? match.getRequestedAt() : match.getTimestamp();
+    }
+
+    private void releaseSeat(Match match) {
+        releaseSeat(match.getDriverId(), match.getRouteId());
+    }
+
+    private void releaseSeat(String driverId, String routeId) {
+        long free = seatLedger.release(routeId);
+        if (free >= 0) {
+            driverIndex.recordFreeSeats(driverId, routeId, free);
+        }
+    }
+
+    /**
+     * Cold start (or stale station): seed the index with one ListDrivers call for the station.
+     */
+    private void warmStation(String station, long now, String token) {
+        ListDriversRequest listRequest = ListDriversRequest.newBuilder()
+            .setStation(station)
+            .build();
+
+        com.lastmile.driver.proto.ListDriversResponse listResponse = attachToken(driverStub, token).listDrivers(listRequest);
+        if (listResponse.getSuccess()) {
+            driverIndex.warmStation(station, listResponse.getDriversList(), now);
+        } else {
+            System.out.println("DEBUG: ListDrivers failed: " + listResponse.getSuccess());
+        }
+    }
 
-                double rawFare = Math.abs(driverLat - stationLat) + Math.abs(driverLon - stationLon);
-                fare = (int) (rawFare * 100);
+    /**
+     * The PENDING matches queued at the given pickup stations, page by page, oldest first. Queue
+     * entries whose match is no longer PENDING (or no longer exists) are dropped from the queue
+     * on the way, so a page can come back empty before the scan is over.
+     */
+    private Iterator<List<Match>> pendingPages(List<String> stations) {
+        Iterator<List<String>> pages = pendingQueue.scan(stations, PENDING_PAGE_SIZE);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return pages.hasNext();
             }
-        } catch (Exception e) {
-            System.err.println("Error calculating fare: " + e.getMessage());
+
+            @Override
+            public List<Match> next() {
+                return loadPending(pages.next(), stations);
+            }
+        };
+    }
+
+    private List<Match> loadPending(List<String> matchIds, List<String> stations) {
+        if (matchIds.isEmpty()) return Collections.emptyList();
+
+        Map<String, Match> byId = new HashMap<>();
+        for (Match match : matchRepository.findAllById(matchIds)) {
+            byId.put(match.getMatchId(), match);
         }
-        return fare;
+
+        List<Match> pending = new ArrayList<>(matchIds.size());
+        for (String matchId : matchIds) {
+            Match match = byId.get(matchId);
+            if (match != null && "PENDING".equals(match.getStatus())) {
+                pending.add(match);
+            } else {
+                for (String station : stations) {
+                    if (match == null || station.equals(match.getPickupStation())) {
+                        pendingQueue.remove(station, matchId);
+                    }
+                }
+            }
+        }
+        return pending;
     }
 
-    private void notifyDriver(String driverId, String riderId, String matchId, String token) {
-        System.out.println("DEBUG: Notifying driver: " + driverId + ", rider: " + riderId + ", match: " + matchId);
-        try {
-            attachToken(notificationStub, token).sendMatchNotification(
-                SendMatchNotificationRequest.newBuilder()
-                    .setDriverId(driverId)
-                    .setRiderId(riderId)
-                    .setMatchId(matchId)
-                    .build()
-            );
-        } catch (Exception e) {
-            System.err.println("Failed to notify driver: " + e.getMessage());
+    private com.lastmile.driver.proto.DriverInfo toDriverInfo(com.lastmile.driver.proto.GetDriverInfoResponse info) {
+        var builder = com.lastmile.driver.proto.DriverInfo.newBuilder()
+            .setDriverId(info.getDriverId())
+            .setDestination(info.getDestination())
+            .setAvailableSeats(info.getAvailableSeats())
+            .addAllMetroStations(info.getMetroStationsList())
+            .setRating(info.getRating())
+            .setRouteId(info.getRouteId());
+        if (info.hasCurrentLocation()) {
+            builder.setCurrentLocation(info.getCurrentLocation());
         }
+        return builder.build();
     }
-    @org.springframework.scheduling.annotation.Scheduled(fixedRate = 30000) // Check every 30s
+
+    @org.springframework.scheduling.annotation.Scheduled(fixedRate = 1000) // Deadlines are indexed, so a 1s sweep is cheap
     public void checkMatchTimeouts() {
-        System.out.println("DEBUG: Running checkMatchTimeouts...");
         long now = System.currentTimeMillis();
-        long timeoutThreshold = 45000; // 45 seconds timeout
 
-        List<Match> matchedRides = matchRepository.findByStatus("MATCHED");
-        for (Match match : matchedRides) {
-            if (now - match.getTimestamp() > timeoutThreshold) {
-                System.out.println("DEBUG: Match " + match.getMatchId() + " timed out. Reverting to PENDING. Driver was: " + match.getDriverId());
-                
-                // Revert to PENDING
-                match.setStatus("PENDING");
-                match.setDriverId(null); // Clear driver so it can be picked up by anyone
-                // Don't reset timestamp completely, or maybe reset it to now to give it fresh priority? 
-                // Let's keep original timestamp or just update it to now so it doesn't look like it's been waiting forever if we sort by time.
-                // Actually, for "PENDING" queue, older might be better. But here we just want it to be valid.
-                
-                matchRepository.save(match);
-                
-                // Notify Rider -> "Searching for new driver..."
-                publishMatchUpdate(match.getRiderId(), match.getMatchId(), "PENDING", null, null, 0);
-                
-                // Ideally cancel the request sent to the driver dashboard too, but the dashboard usually just polls or listens.
-                // We can send a CANCEL/TIMEOUT event to the driver if needed.
+        // Only matches whose deadline has passed are read; claiming removes them from the index
+        List<String> expiredIds = deadlineQueue.claimExpired(now, 500);
+        if (expiredIds.isEmpty()) return;
+
+        // Claimed entries are gone from the index: anything that fails puts its deadline back
+        List<Match> expired;
+        try {
+            expired = new ArrayList<>();
+            matchRepository.findAllById(expiredIds).forEach(expired::add);
+        } catch (RuntimeException e) {
+            expiredIds.forEach(id -> deadlineQueue.schedule(id, now));
+            throw e;
+        }
+        for (Match match : expired) {
+            try {
+                expireMatch(match, now);
+            } catch (Exception e) {
+                log.error("Match timeout handling failed, retrying on the next sweep - matchId: {}", match.getMatchId(), e);
+                deadlineQueue.schedule(match.getMatchId(), now);
+            }
+        }
+    }
+
+    private void expireMatch(Match match, long now) {
+        if ("PENDING".equals(match.getStatus())) {
+            // An earlier sweep reverted it but failed before queueing it; ZADD is idempotent
+            pendingQueue.enqueue(match.getPickupStation(), match.getMatchId(), requestedAt(match));
+            return;
+        }
+        // Accepted or declined since the deadline was set
+        if (!"MATCHED".equals(match.getStatus())) {
+            return;
+        }
+        // Re-matched concurrently: put the newer deadline back
+        if (now - match.getTimestamp() < MATCH_TIMEOUT_MS) {
+            deadlineQueue.schedule(match.getMatchId(), match.getTimestamp() + MATCH_TIMEOUT_MS);
+            return;
+        }
+        System.out.println("DEBUG: Match " + match.getMatchId() + " timed out. Reverting to PENDING. Driver was: " + match.getDriverId());
+
+        // Revert to PENDING, clearing the driver so it can be picked up by anyone.
+        // It is queued at its original request time, so it keeps its place in the station queue.
+        // Notify Rider -> "Searching for new driver..."
+        List<Match.OutboxEvent> events = List.of(
+            matchUpdateEvent(match.getRiderId(), match.getMatchId(), "PENDING", null, null, 0));
+        Update update = new Update().set("status", "PENDING").unset("driverId").unset("routeId");
+        if (matchTransitions.apply(match, update, events) == null) {
+            return;
+        }
+        pendingQueue.enqueue(match.getPickupStation(), match.getMatchId(), requestedAt(match));
+        releaseSeat(match);
+        outboxRelay.dispatch(match.getMatchId(), events);
+
+        // Ideally cancel the request sent to the driver dashboard too, but the dashboard usually just polls or listens.
+        // We can send a CANCEL/TIMEOUT event to the driver if needed.
+    }
+
+    /**
+     * Settles accepts left in CONFIRMING by a replica that died between claiming the match and
+     * recording the outcome; until then the match holds its seat and nothing else can act on it.
+     * If trip-service has the trip (its ID is the match ID) the match is confirmed, otherwise it
+     * goes back to MATCHED with a fresh deadline, to be accepted again or time out.
+     */
+    @org.springframework.scheduling.annotation.Scheduled(fixedDelay = 10000)
+    public void sweepStaleConfirming() {
+        long cutoff = System.currentTimeMillis() - CONFIRM_STALE_MS;
+        List<Match> stale = matchRepository.findByStatusAndConfirmingSinceLessThan("CONFIRMING", cutoff,
+            org.springframework.data.domain.PageRequest.of(0, CONFIRM_SWEEP_BATCH));
+        for (Match match : stale) {
+            try {
+                settleConfirming(match);
+            } catch (io.grpc.StatusRuntimeException e) {
+                // trip-service unreachable: leave the rest for the next sweep rather than block the scheduler
+                log.warn("Trip lookup failed while settling CONFIRMING matches, retrying next sweep: {}", e.getStatus());
+                return;
+            } catch (Exception e) {
+                log.error("Could not settle stale CONFIRMING match - matchId: {}", match.getMatchId(), e);
             }
         }
     }
+
+    private void settleConfirming(Match match) {
+        String matchId = match.getMatchId();
+        GetTripInfoResponse trip = attachToken(tripStub, serviceCredential.token())
+            .withDeadlineAfter(TRIP_LOOKUP_DEADLINE_MS, java.util.concurrent.TimeUnit.MILLISECONDS)
+            .getTripInfo(GetTripInfoRequest.newBuilder().setTripId(matchId).build());
+        if (!trip.getSuccess()) {
+            log.warn("Reverting stale CONFIRMING match, no trip was created - matchId: {}", matchId);
+            revertConfirming(match);
+            return;
+        }
+        List<Match.OutboxEvent> events = List.of(
+            matchUpdateEvent(match.getRiderId(), matchId, "CONFIRMED", match.getDriverId(), matchId, match.getFare()));
+        if (matchTransitions.apply(match, new Update().set("status", "CONFIRMED").set("tripId", matchId), events) != null) {
+            outboxRelay.dispatch(matchId, events);
+            log.info("Confirmed stale CONFIRMING match whose trip exists - matchId: {}", matchId);
+        }
+    }
+
+    @org.springframework.scheduling.annotation.Scheduled(fixedRate = 60000)
+    public void evictInactiveDrivers() {
+        long now = System.currentTimeMillis();
+        int evicted = driverIndex.evictInactive(now, 10 * 60000);
+        driverEvents.prune(now);
+        if (evicted > 0) {
+            log.debug("Evicted {} inactive drivers from index, {} remaining", evicted, driverIndex.size());
+        }
+    }
 }
 
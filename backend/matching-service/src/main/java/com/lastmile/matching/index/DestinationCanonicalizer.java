@@ -0,0 +1,59 @@
+package com.lastmile.matching.index;
+
+import java.text.Normalizer;
+import java.util.*;
+
+/**
+ * Turns a free-text destination into a set of area tokens.
+ *
+ * Text is lower-cased, accents and punctuation are stripped, and generic place words
+ * ("road", "near", "metro", ...) are dropped, so "Koramangala 5th Block, near Forum" becomes
+ * {koramangala, 5th, block, forum}. Two destinations match when one token set contains the
+ * other: the word-level version of the old two-way substring check, without "Rd" matching
+ * every road in the city.
+ */
+public final class DestinationCanonicalizer {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+        "the", "a", "an", "of", "and", "to", "near", "opp", "opposite", "behind", "beside",
+        "road", "rd", "street", "st", "lane", "ln", "avenue", "ave", "main", "cross",
+        "metro", "station", "stop", "bus", "junction", "jn", "circle"
+    );
+
+    private DestinationCanonicalizer() {
+    }
+
+    /**
+     * Area tokens for the destination. If every word is generic the whole normalised phrase is
+     * kept as the single token, so "Main Road" still only matches "Main Road".
+     */
+    public static Set<String> tokens(String destination) {
+        if (destination == null) return Collections.emptySet();
+        String normalized = Normalizer.normalize(destination, Normalizer.Form.NFD)
+            .replaceAll("\\p{M}", "")
+            .toLowerCase(Locale.ROOT)
+            .replaceAll("[^a-z0-9]+", " ")
+            .trim();
+        if (normalized.isEmpty()) return Collections.emptySet();
+
+        Set<String> tokens = new TreeSet<>();
+        for (String word : normalized.split(" ")) {
+            if (!STOP_WORDS.contains(word)) {
+                tokens.add(word);
+            }
+        }
+        if (tokens.isEmpty()) {
+            tokens.add(normalized);
+        }
+        return Collections.unmodifiableSet(tokens);
+    }
+
+    public static boolean matches(Set<String> driverTokens, Set<String> riderTokens) {
+        if (driverTokens.isEmpty() || riderTokens.isEmpty()) return false;
+        return driverTokens.containsAll(riderTokens) || riderTokens.containsAll(driverTokens);
+    }
+
+    public static boolean matches(String driverDestination, String riderDestination) {
+        return matches(tokens(driverDestination), tokens(riderDestination));
+    }
+}
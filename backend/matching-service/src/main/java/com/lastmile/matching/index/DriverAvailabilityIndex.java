@@ -0,0 +1,213 @@
+package com.lastmile.matching.index;
+
+import com.lastmile.driver.proto.DriverInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local view of driver availability, keyed by metro station.
+ *
+ * Entries are refreshed from driver-service events (DRIVER_AVAILABLE -> GetDriverInfo) and,
+ * on a cold start, seeded per station from a single ListDrivers call. Within a station,
+ * drivers are also indexed by destination token (see {@link DestinationCanonicalizer}), so a
+ * rider's candidates come from a few hash probes instead of comparing every destination.
+ *
+ * Seats are owned by the shared {@code SeatLedger}; the index only remembers the free count
+ * the ledger last reported per driver, so candidates known to be full are skipped without a
+ * round trip. A refresh from driver-service drops that hint again.
+ */
+@Component
+public class DriverAvailabilityIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(DriverAvailabilityIndex.class);
+
+    // Same freshness rule driver-service applies in listDrivers
+    public static final long ACTIVE_THRESHOLD_MS = 60000;
+
+    // A station is re-seeded from driver-service after this long, in case events were missed
+    public static final long STATION_WARM_TTL_MS = 5 * 60000;
+
+    private final Map<String, DriverInfo> drivers = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> driversByStation = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> driverTokens = new ConcurrentHashMap<>();
+    // station -> destination token -> driver IDs
+    private final Map<String, Map<String, Set<String>>> driversByStationToken = new ConcurrentHashMap<>();
+    private final Map<String, Integer> freeSeatHints = new ConcurrentHashMap<>();
+    private final Map<String, Long> stationWarmedAt = new ConcurrentHashMap<>();
+
+    public void update(DriverInfo driver) {
+        String driverId = driver.getDriverId();
+        if (driverId == null || driverId.isEmpty()) return;
+
+        DriverInfo previous = drivers.put(driverId, driver);
+        freeSeatHints.remove(driverId);
+        Set<String> tokens = DestinationCanonicalizer.tokens(driver.getDestination());
+        Set<String> previousTokens = driverTokens.put(driverId, tokens);
+        if (previous != null) {
+            boolean sameTokens = tokens.equals(previousTokens);
+            for (String station : previous.getMetroStationsList()) {
+                if (!driver.getMetroStationsList().contains(station)) {
+                    Set<String> ids = driversByStation.get(station);
+                    if (ids != null) ids.remove(driverId);
+                    unindexTokens(station, driverId, previousTokens);
+                } else if (!sameTokens) {
+                    unindexTokens(station, driverId, previousTokens);
+                }
+            }
+        }
+        for (String station : driver.getMetroStationsList()) {
+            driversByStation.computeIfAbsent(station, s -> ConcurrentHashMap.newKeySet()).add(driverId);
+            Map<String, Set<String>> byToken = driversByStationToken.computeIfAbsent(station, s -> new ConcurrentHashMap<>());
+            for (String token : tokens) {
+                byToken.computeIfAbsent(token, t -> ConcurrentHashMap.newKeySet()).add(driverId);
+            }
+        }
+    }
+
+    public void remove(String driverId) {
+        DriverInfo previous = drivers.remove(driverId);
+        freeSeatHints.remove(driverId);
+        Set<String> previousTokens = driverTokens.remove(driverId);
+        if (previous != null) {
+            for (String station : previous.getMetroStationsList()) {
+                Set<String> ids = driversByStation.get(station);
+                if (ids != null) ids.remove(driverId);
+                unindexTokens(station, driverId, previousTokens);
+            }
+        }
+    }
+
+    private void unindexTokens(String station, String driverId, Set<String> tokens) {
+        Map<String, Set<String>> byToken = driversByStationToken.get(station);
+        if (byToken == null || tokens == null) return;
+        for (String token : tokens) {
+            Set<String> ids = byToken.get(token);
+            if (ids != null) ids.remove(driverId);
+        }
+    }
+
+    public boolean isWarm(String station, long now) {
+        Long warmedAt = stationWarmedAt.get(station);
+        return warmedAt != null && now - warmedAt < STATION_WARM_TTL_MS;
+    }
+
+    /**
+     * Seeds a station from a ListDrivers response. Drivers returned are the active ones for
+     * that station, so they replace whatever the index held before: drivers indexed at the
+     * station but missing from the response are unindexed from it, unless a fresher event
+     * has shown them active since.
+     */
+    public void warmStation(String station, List<DriverInfo> activeDrivers, long now) {
+        Set<String> returned = new HashSet<>();
+        for (DriverInfo driver : activeDrivers) {
+            update(driver);
+            returned.add(driver.getDriverId());
+        }
+        Set<String> indexed = driversByStation.get(station);
+        if (indexed != null) {
+            for (String driverId : new ArrayList<>(indexed)) {
+                if (returned.contains(driverId)) continue;
+                DriverInfo driver = drivers.get(driverId);
+                if (driver != null && isActive(driver, now) && driver.getMetroStationsList().contains(station)) continue;
+                indexed.remove(driverId);
+                unindexTokens(station, driverId, driverTokens.get(driverId));
+            }
+        }
+        stationWarmedAt.put(station, now);
+        log.debug("Warmed station {} with {} drivers", station, activeDrivers.size());
+    }
+
+    /**
+     * Drivers serving the station whose last location fix is fresh, in no particular order.
+     */
+    public List<DriverInfo> candidates(String station, long now) {
+        Set<String> ids = driversByStation.get(station);
+        if (ids == null || ids.isEmpty()) return Collections.emptyList();
+
+        List<DriverInfo> result = new ArrayList<>(ids.size());
+        for (String driverId : ids) {
+            DriverInfo driver = drivers.get(driverId);
+            if (driver != null && isActive(driver, now)) {
+                result.add(driver);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Active drivers at the station whose destination matches the rider's tokens. Only
+     * drivers sharing at least one token are looked at.
+     */
+    public List<DriverInfo> candidates(String station, Set<String> destinationTokens, long now) {
+        Map<String, Set<String>> byToken = driversByStationToken.get(station);
+        if (byToken == null || destinationTokens.isEmpty()) return Collections.emptyList();
+
+        Set<String> ids = new HashSet<>();
+        for (String token : destinationTokens) {
+            Set<String> withToken = byToken.get(token);
+            if (withToken != null) ids.addAll(withToken);
+        }
+
+        List<DriverInfo> result = new ArrayList<>(ids.size());
+        for (String driverId : ids) {
+            DriverInfo driver = drivers.get(driverId);
+            if (driver != null && isActive(driver, now)
+                    && DestinationCanonicalizer.matches(tokensOf(driverId), destinationTokens)) {
+                result.add(driver);
+            }
+        }
+        return result;
+    }
+
+    /** Canonical destination tokens of an indexed driver. */
+    public Set<String> tokensOf(String driverId) {
+        return driverTokens.getOrDefault(driverId, Collections.emptySet());
+    }
+
+    public DriverInfo get(String driverId) {
+        return drivers.get(driverId);
+    }
+
+    public int effectiveSeats(String driverId) {
+        DriverInfo driver = drivers.get(driverId);
+        if (driver == null) return 0;
+        Integer hint = freeSeatHints.get(driverId);
+        return hint != null ? hint : driver.getAvailableSeats();
+    }
+
+    /**
+     * Records the free seat count the ledger returned for a driver's route. Ignored if the
+     * driver has registered a different route since.
+     */
+    public void recordFreeSeats(String driverId, String routeId, long free) {
+        if (driverId == null) return;
+        DriverInfo driver = drivers.get(driverId);
+        if (driver == null || !driver.getRouteId().equals(routeId)) return;
+        freeSeatHints.put(driverId, (int) Math.max(0, free));
+    }
+
+    /** Drops drivers that have not sent a location for a long time. */
+    public int evictInactive(long now, long maxIdleMs) {
+        int evicted = 0;
+        for (DriverInfo driver : new ArrayList<>(drivers.values())) {
+            long lastSeen = driver.hasCurrentLocation() ? driver.getCurrentLocation().getTimestamp() : 0;
+            if (now - lastSeen > maxIdleMs) {
+                remove(driver.getDriverId());
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    public int size() {
+        return drivers.size();
+    }
+
+    private boolean isActive(DriverInfo driver, long now) {
+        return driver.hasCurrentLocation() && now - driver.getCurrentLocation().getTimestamp() < ACTIVE_THRESHOLD_MS;
+    }
+}
@@ -0,0 +1,87 @@
+package com.lastmile.matching.ledger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Matching's side of the seat ledger for a driver's route.
+ *
+ * Each route has a Redis hash {@code seats:<routeId>} with two counters:
+ * {@code free} (seats nobody holds) and {@code held} (seats reserved by MATCHED matches
+ * waiting for the driver). Matching moves seats between the two, each move a single atomic
+ * Lua script:
+ * <ul>
+ *   <li>reserve: free -> held, when a rider is matched</li>
+ *   <li>release: held -> free, on decline, timeout or rider cancel</li>
+ * </ul>
+ * driver-service owns the rest of the lifecycle (creating the hash on route registration,
+ * taking a held seat on accept, freeing it on completion). Routes registered before the
+ * ledger existed are created lazily from the driver's availableSeats on first reserve.
+ */
+@Component
+public class SeatLedger {
+
+    private static final String KEY_PREFIX = "seats:";
+
+    // Routes are re-registered daily at the latest; stale ledgers expire on their own
+    private static final long TTL_SECONDS = 24 * 3600;
+
+    private static final String INIT_IF_ABSENT =
+        "if redis.call('EXISTS', KEYS[1]) == 0 then " +
+        "  redis.call('HSET', KEYS[1], 'free', ARGV[1], 'held', 0) " +
+        "  redis.call('EXPIRE', KEYS[1], ARGV[2]) " +
+        "end ";
+
+    // Returns the free seats left after reserving, or -1 if there were none
+    private static final RedisScript<Long> RESERVE = new DefaultRedisScript<>(
+        INIT_IF_ABSENT +
+        "local free = tonumber(redis.call('HGET', KEYS[1], 'free')) " +
+        "if free <= 0 then return -1 end " +
+        "redis.call('HINCRBY', KEYS[1], 'held', 1) " +
+        "return redis.call('HINCRBY', KEYS[1], 'free', -1)",
+        Long.class);
+
+    // Returns the free seats after releasing, or -1 if nothing was held
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>(
+        "local held = tonumber(redis.call('HGET', KEYS[1], 'held') or '0') " +
+        "if held <= 0 then return -1 end " +
+        "redis.call('HINCRBY', KEYS[1], 'held', -1) " +
+        "return redis.call('HINCRBY', KEYS[1], 'free', 1)",
+        Long.class);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    /**
+     * Holds one seat on the route.
+     *
+     * @param availableSeats the driver's seat count, used only if the ledger does not exist yet
+     * @return free seats left after the reservation, or -1 if the route is full
+     */
+    public long reserve(String routeId, int availableSeats) {
+        if (routeId == null || routeId.isEmpty()) return -1;
+        return run(RESERVE, routeId, String.valueOf(availableSeats), String.valueOf(TTL_SECONDS));
+    }
+
+    /** Gives back a held seat. Returns the free seats afterwards, or -1 if none was held. */
+    public long release(String routeId) {
+        if (routeId == null || routeId.isEmpty()) return -1;
+        return run(RELEASE, routeId);
+    }
+
+    private long run(RedisScript<Long> script, String routeId, String... args) {
+        List<String> keys = Collections.singletonList(key(routeId));
+        Long result = redisTemplate.execute(script, keys, (Object[]) args);
+        return result != null ? result : -1;
+    }
+
+    private static String key(String routeId) {
+        return KEY_PREFIX + routeId;
+    }
+}
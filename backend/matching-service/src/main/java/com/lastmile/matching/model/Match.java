@@ -4,16 +4,77 @@ import lombok.Data;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
 @Data
 @Document(collection = "matches")
 public class Match {
     @Id
     private String matchId;
     private String driverId;
+    private String routeId; // driver's route the seat is held on
     private String riderId;
     private String pickupStation;
     private String destination;
-    private String status; // PENDING, MATCHED, CONFIRMED, CANCELLED
+    private String status; // PENDING, MATCHED, CONFIRMING, CONFIRMED, CANCELLED
     private int fare;
-    private long timestamp;
+    private long timestamp; // last status change: creation, match or revert
+    private long requestedAt; // when the rider asked; orders the request in its station queue
+    private String tripId;
+    private long confirmingSince; // when an accept started creating the trip
+    private long version; // bumped by every status transition, see MatchTransitions
+    private List<OutboxEvent> outbox = new ArrayList<>(); // side effects not yet delivered
+
+    /**
+     * A side effect of a status change, written in the same document update as the change
+     * and removed once OutboxRelay has delivered it.
+     */
+    @Data
+    public static class OutboxEvent {
+        public static final String PUBLISH = "PUBLISH";
+        public static final String NOTIFY_DRIVER = "NOTIFY_DRIVER";
+        public static final String CANCEL_RIDE_REQUEST = "CANCEL_RIDE_REQUEST";
+
+        private String eventId;
+        private String type;
+        private String channel; // PUBLISH
+        private byte[] payload; // PUBLISH, encoded with EventCodec
+        private String message; // PUBLISH, text payload of events stored before payload existed
+        private String driverId;
+        private String riderId;
+        private String matchId;
+        private long createdAt;
+        private int attempts;
+
+        public static OutboxEvent publish(String channel, byte[] payload) {
+            OutboxEvent event = create(PUBLISH);
+            event.setChannel(channel);
+            event.setPayload(payload);
+            return event;
+        }
+
+        public static OutboxEvent notifyDriver(String driverId, String riderId, String matchId) {
+            OutboxEvent event = create(NOTIFY_DRIVER);
+            event.setDriverId(driverId);
+            event.setRiderId(riderId);
+            event.setMatchId(matchId);
+            return event;
+        }
+
+        public static OutboxEvent cancelRideRequest(String riderId) {
+            OutboxEvent event = create(CANCEL_RIDE_REQUEST);
+            event.setRiderId(riderId);
+            return event;
+        }
+
+        private static OutboxEvent create(String type) {
+            OutboxEvent event = new OutboxEvent();
+            event.setEventId(UUID.randomUUID().toString());
+            event.setType(type);
+            event.setCreatedAt(System.currentTimeMillis());
+            return event;
+        }
+    }
 }
@@ -0,0 +1,66 @@
+package com.lastmile.matching.outbox;
+
+import com.lastmile.matching.model.Match;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compare-and-set writes for match status changes.
+ *
+ * A transition only applies if the match still has the version it was read at, so two
+ * handlers racing on the same match (or a retried RPC) cannot both win. The side effects of
+ * the change go into the match's outbox in the same single-document write, which Mongo
+ * applies atomically without needing a multi-document transaction.
+ */
+@Component
+public class MatchTransitions {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Applies the update, bumps the version and appends the events.
+     *
+     * @return the updated match, or null if it changed since {@code current} was read
+     */
+    public Match apply(Match current, Update update, List<Match.OutboxEvent> events) {
+        Criteria criteria = Criteria.where("_id").is(current.getMatchId());
+        if (current.getVersion() == 0) {
+            // Matches stored before versioning have no version field
+            criteria = criteria.orOperator(Criteria.where("version").is(0), Criteria.where("version").exists(false));
+        } else {
+            criteria = criteria.and("version").is(current.getVersion());
+        }
+
+        update.inc("version", 1);
+        if (!events.isEmpty()) {
+            update.push("outbox").each(events.toArray());
+        }
+        return mongoTemplate.findAndModify(new Query(criteria), update,
+            FindAndModifyOptions.options().returnNew(true), Match.class);
+    }
+
+    /**
+     * Stores a new match together with its first events.
+     *
+     * @return false if a match with this ID already exists (a retried request)
+     */
+    public boolean create(Match match, List<Match.OutboxEvent> events) {
+        match.setOutbox(new ArrayList<>(events));
+        try {
+            mongoTemplate.insert(match);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.lastmile.matching.outbox;
+
+import com.lastmile.matching.events.EventCodec;
+import com.lastmile.matching.model.Match;
+import com.lastmile.notification.proto.NotificationServiceGrpc;
+import com.lastmile.notification.proto.SendMatchNotificationRequest;
+import com.lastmile.rider.proto.CancelRideRequestRequest;
+import com.lastmile.rider.proto.RiderServiceGrpc;
+import io.grpc.Metadata;
+import io.grpc.stub.AbstractStub;
+import io.grpc.stub.MetadataUtils;
+import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers match outbox events: Redis publishes, driver notifications and rider-service
+ * callbacks.
+ *
+ * Events are handed to {@link #dispatch} right after the write that created them, so the
+ * common case has no extra latency. Anything that did not get delivered (crash, downstream
+ * error) is picked up by the periodic relay in batches. Delivery is at least once; an event
+ * is removed from the outbox once delivered, or dropped after {@link #MAX_ATTEMPTS}.
+ */
+@Component
+public class OutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    // Younger events are still being delivered by dispatch()
+    private static final long RELAY_DELAY_MS = 5000;
+    private static final int BATCH_SIZE = 100;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final Duration LEASE = Duration.ofSeconds(30);
+    // Per downstream call; a match's few events finish well inside its lease
+    private static final long CALL_DEADLINE_MS = 5000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private ServiceCredential serviceCredential;
+
+    @Autowired
+    @Qualifier("matchSideEffectExecutor")
+    private Executor sideEffectExecutor;
+
+    @GrpcClient("notification-service")
+    private NotificationServiceGrpc.NotificationServiceBlockingStub notificationStub;
+
+    @GrpcClient("rider-service")
+    private RiderServiceGrpc.RiderServiceBlockingStub riderStub;
+
+    @jakarta.annotation.PostConstruct
+    public void init() {
+        mongoTemplate.indexOps(Match.class).ensureIndex(
+            new Index().on("outbox.createdAt", Sort.Direction.ASC).sparse().named("outbox_pending"));
+    }
+
+    /** Delivers events just written for the match, off the caller's thread. */
+    public void dispatch(String matchId, List<Match.OutboxEvent> events) {
+        if (events.isEmpty()) return;
+        List<Match.OutboxEvent> batch = new ArrayList<>(events);
+        sideEffectExecutor.execute(() -> deliver(matchId, batch));
+    }
+
+    @Scheduled(fixedDelay = 2000)
+    public void relayPending() {
+        long cutoff = System.currentTimeMillis() - RELAY_DELAY_MS;
+        Query query = new Query(Criteria.where("outbox.createdAt").lt(cutoff)).limit(BATCH_SIZE);
+        query.fields().include("outbox");
+
+        List<Match> matches;
+        try {
+            matches = mongoTemplate.find(query, Match.class);
+        } catch (Exception e) {
+            log.error("Failed to read match outbox", e);
+            return;
+        }
+
+        for (Match match : matches) {
+            // One replica relays a given match at a time
+            Boolean leased = redisTemplate.opsForValue()
+                .setIfAbsent("outbox-lease:" + match.getMatchId(), "1", LEASE);
+            if (!Boolean.TRUE.equals(leased)) continue;
+
+            List<Match.OutboxEvent> due = new ArrayList<>();
+            for (Match.OutboxEvent event : match.getOutbox()) {
+                if (event.getCreatedAt() < cutoff) due.add(event);
+            }
+            // Delivery makes blocking calls; the shared scheduler thread only hands it off.
+            // If the pool drops the task the lease expires and a later run retries it.
+            sideEffectExecutor.execute(() -> {
+                try {
+                    deliver(match.getMatchId(), due);
+                } finally {
+                    redisTemplate.delete("outbox-lease:" + match.getMatchId());
+                }
+            });
+        }
+        if (!matches.isEmpty()) {
+            log.info("Relaying outbox events for {} matches", matches.size());
+        }
+    }
+
+    private void deliver(String matchId, List<Match.OutboxEvent> events) {
+        List<String> done = new ArrayList<>();
+        for (Match.OutboxEvent event : events) {
+            try {
+                send(event);
+                done.add(event.getEventId());
+            } catch (Exception e) {
+                if (event.getAttempts() + 1 >= MAX_ATTEMPTS) {
+                    log.error("Dropping outbox event after {} attempts - matchId: {}, type: {}",
+                        MAX_ATTEMPTS, matchId, event.getType(), e);
+                    done.add(event.getEventId());
+                } else {
+                    log.warn("Outbox event delivery failed, will retry - matchId: {}, type: {}: {}",
+                        matchId, event.getType(), e.getMessage());
+                    mongoTemplate.updateFirst(
+                        new Query(Criteria.where("_id").is(matchId).and("outbox.eventId").is(event.getEventId())),
+                        new Update().inc("outbox.$.attempts", 1), Match.class);
+                }
+            }
+        }
+        if (!done.isEmpty()) {
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(matchId)),
+                new Update().pull("outbox", Query.query(Criteria.where("eventId").in(done))), Match.class);
+        }
+    }
+
+    private void send(Match.OutboxEvent event) {
+        switch (event.getType()) {
+            case Match.OutboxEvent.PUBLISH ->
+                EventCodec.publish(redisTemplate, event.getChannel(),
+                    event.getPayload() != null ? event.getPayload() : legacyPayload(event.getChannel(), event.getMessage()));
+            case Match.OutboxEvent.NOTIFY_DRIVER ->
+                withServiceToken(notificationStub).sendMatchNotification(
+                    SendMatchNotificationRequest.newBuilder()
+                        .setDriverId(event.getDriverId())
+                        .setRiderId(event.getRiderId())
+                        .setMatchId(event.getMatchId())
+                        .build());
+            case Match.OutboxEvent.CANCEL_RIDE_REQUEST ->
+                withServiceToken(riderStub).cancelRideRequest(
+                    CancelRideRequestRequest.newBuilder()
+                        .setRiderId(event.getRiderId())
+                        .build());
+            default -> log.warn("Unknown outbox event type: {}", event.getType());
+        }
+    }
+
+    /**
+     * Re-encodes a PUBLISH event written in the old text format
+     * ({@code matchId,status,driverId,tripId,fare} on match-status,
+     * {@code MATCH_REQUEST,matchId::riderId::pickup::fare::destination} on driver-dashboard),
+     * since listeners now only read protobuf.
+     */
+    private static byte[] legacyPayload(String channel, String message) {
+        if (message == null) {
+            throw new IllegalStateException("PUBLISH event without payload on " + channel);
+        }
+        if (channel.startsWith("match-status:")) {
+            String[] parts = message.split(",", -1);
+            if (parts.length >= 5) {
+                return EventCodec.matchStatus(parts[0], parts[1], parts[2], parts[3], parseFare(parts[4]));
+            }
+        } else if (channel.startsWith("driver-dashboard:") && message.startsWith("MATCH_REQUEST,")) {
+            String[] parts = message.substring("MATCH_REQUEST,".length()).split("::", -1);
+            if (parts.length >= 5) {
+                return EventCodec.matchRequest(parts[0], parts[1], parts[2], parts[4], parseFare(parts[3]));
+            }
+        }
+        throw new IllegalStateException("Unrecognised legacy message on " + channel);
+    }
+
+    private static int parseFare(String fare) {
+        try {
+            return Integer.parseInt(fare);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Events outlive the requests that caused them, so they go out as matching-service itself
+    private <T extends AbstractStub<T>> T withServiceToken(T stub) {
+        Metadata headers = new Metadata();
+        headers.put(Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER), "Bearer " + serviceCredential.token());
+        return stub.withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers))
+            .withDeadlineAfter(CALL_DEADLINE_MS, TimeUnit.MILLISECONDS);
+    }
+}
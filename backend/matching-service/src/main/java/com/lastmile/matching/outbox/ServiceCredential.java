@@ -0,0 +1,60 @@
+package com.lastmile.matching.outbox;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Bearer token matching-service uses for its own downstream calls, such as outbox delivery,
+ * which may run long after the rider or driver whose request caused them has logged out.
+ *
+ * Registered under {@code service-token:<token>}, apart from user sessions: it is not a login,
+ * and only the methods a service's AuthInterceptor lists for service callers accept it
+ * (notification-service SendMatchNotification, rider-service CancelRideRequest, trip-service
+ * GetTripInfo). The token comes from {@code matching.service-token}, or is generated per
+ * replica if that is empty, and its key is refreshed on a schedule well inside its TTL.
+ */
+@Component
+public class ServiceCredential {
+
+    private static final Logger log = LoggerFactory.getLogger(ServiceCredential.class);
+
+    static final String SERVICE_NAME = "matching-service";
+    private static final Duration TTL = Duration.ofHours(1);
+
+    @Value("${matching.service-token:}")
+    private String configuredToken;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    private String token;
+
+    @jakarta.annotation.PostConstruct
+    public void init() {
+        token = configuredToken != null && !configuredToken.isEmpty()
+            ? configuredToken
+            : UUID.randomUUID().toString();
+        register();
+    }
+
+    @Scheduled(fixedDelay = 600000, initialDelay = 600000)
+    public void register() {
+        try {
+            redisTemplate.opsForValue().set("service-token:" + token, SERVICE_NAME, TTL);
+        } catch (Exception e) {
+            log.warn("Could not register the service token, retrying: {}", e.getMessage());
+        }
+    }
+
+    public String token() {
+        return token;
+    }
+}
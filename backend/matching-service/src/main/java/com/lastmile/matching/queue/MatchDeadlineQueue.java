@@ -0,0 +1,50 @@
+package com.lastmile.matching.queue;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Expiry deadlines of MATCHED matches awaiting driver confirmation.
+ *
+ * A Redis sorted set scored by deadline (epoch ms), so the timeout sweep only reads entries
+ * that are already due. Claiming an entry removes it; only the replica whose ZREM succeeds
+ * handles the timeout, and it must {@link #schedule} the entry again if handling fails.
+ */
+@Component
+public class MatchDeadlineQueue {
+
+    private static final String KEY = "match-deadlines";
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    public void schedule(String matchId, long deadline) {
+        if (matchId == null) return;
+        redisTemplate.opsForZSet().add(KEY, matchId, deadline);
+    }
+
+    public void cancel(String matchId) {
+        if (matchId == null) return;
+        redisTemplate.opsForZSet().remove(KEY, matchId);
+    }
+
+    /**
+     * Removes and returns up to {@code limit} match IDs whose deadline is at or before now.
+     */
+    public List<String> claimExpired(long now, int limit) {
+        Set<String> due = redisTemplate.opsForZSet().rangeByScore(KEY, 0, now, 0, limit);
+        if (due == null || due.isEmpty()) return Collections.emptyList();
+
+        List<String> claimed = new ArrayList<>(due.size());
+        for (String matchId : due) {
+            Long removed = redisTemplate.opsForZSet().remove(KEY, matchId);
+            if (removed != null && removed > 0) {
+                claimed.add(matchId);
+            }
+        }
+        return claimed;
+    }
+}
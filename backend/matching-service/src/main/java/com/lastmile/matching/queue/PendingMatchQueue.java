@@ -0,0 +1,139 @@
+package com.lastmile.matching.queue;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * PENDING match requests partitioned by pickup station.
+ *
+ * One Redis sorted set per station (member = matchId, score = request time), so a driver
+ * only ever looks at requests for the stations on its route, oldest first. Mongo stays the
+ * source of truth for the match itself; entries here are just the ordering.
+ *
+ * Each station also has an enqueue counter, bumped whenever a request is queued there (new
+ * or sent back to PENDING), so a caller can tell whether a station gained requests since it
+ * last looked.
+ */
+@Component
+public class PendingMatchQueue {
+
+    private static final String KEY_PREFIX = "pending-matches:";
+    private static final String ENQUEUES_PREFIX = "pending-enqueues:";
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    public void enqueue(String station, String matchId, long timestamp) {
+        if (station == null || matchId == null) return;
+        redisTemplate.opsForZSet().add(KEY_PREFIX + station, matchId, timestamp);
+        redisTemplate.opsForValue().increment(ENQUEUES_PREFIX + station);
+    }
+
+    /** The enqueue counter of each station, in order; "0" for a station never queued at. */
+    public List<String> enqueueCounts(List<String> stations) {
+        if (stations.isEmpty()) return List.of();
+        List<String> keys = new ArrayList<>(stations.size());
+        for (String station : stations) {
+            keys.add(ENQUEUES_PREFIX + station);
+        }
+        List<String> counts = redisTemplate.opsForValue().multiGet(keys);
+        List<String> result = new ArrayList<>(stations.size());
+        for (int i = 0; i < stations.size(); i++) {
+            String count = counts != null && i < counts.size() ? counts.get(i) : null;
+            result.add(count != null ? count : "0");
+        }
+        return result;
+    }
+
+    public void remove(String station, String matchId) {
+        if (station == null || matchId == null) return;
+        redisTemplate.opsForZSet().remove(KEY_PREFIX + station, matchId);
+    }
+
+    public long depth(String station) {
+        Long size = redisTemplate.opsForZSet().zCard(KEY_PREFIX + station);
+        return size == null ? 0 : size;
+    }
+
+    /**
+     * Pages through the pending match IDs of the given stations, oldest first. Each page holds
+     * up to {@code pageSize} further entries from every station, merged into request-time order;
+     * the scan ends once every station's queue has been read to the end.
+     *
+     * Each station is read from a score cursor rather than a rank offset, so entries removed
+     * while the scan is running (assigned, cancelled) do not shift later entries past it.
+     */
+    public Iterator<List<String>> scan(Collection<String> stations, int pageSize) {
+        List<StationCursor> cursors = new ArrayList<>();
+        for (String station : new LinkedHashSet<>(stations)) {
+            cursors.add(new StationCursor(KEY_PREFIX + station));
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                for (StationCursor cursor : cursors) {
+                    if (!cursor.exhausted) return true;
+                }
+                return false;
+            }
+
+            @Override
+            public List<String> next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                List<ZSetOperations.TypedTuple<String>> entries = new ArrayList<>();
+                for (StationCursor cursor : cursors) {
+                    if (!cursor.exhausted) {
+                        entries.addAll(cursor.read(pageSize));
+                    }
+                }
+                entries.sort(Comparator.comparingDouble(t -> t.getScore() == null ? 0 : t.getScore()));
+
+                List<String> matchIds = new ArrayList<>(entries.size());
+                for (ZSetOperations.TypedTuple<String> entry : entries) {
+                    matchIds.add(entry.getValue());
+                }
+                return matchIds;
+            }
+        };
+    }
+
+    /** Read position in one station's queue: the last score returned and the IDs returned at it. */
+    private final class StationCursor {
+        private final String key;
+        private double score = 0;
+        private final Set<String> seenAtScore = new HashSet<>();
+        private boolean exhausted;
+
+        StationCursor(String key) {
+            this.key = key;
+        }
+
+        List<ZSetOperations.TypedTuple<String>> read(int count) {
+            // Entries at the cursor's score that were already returned are read again and skipped
+            int requested = count + seenAtScore.size();
+            Set<ZSetOperations.TypedTuple<String>> range = redisTemplate.opsForZSet()
+                .rangeByScoreWithScores(key, score, Double.POSITIVE_INFINITY, 0, requested);
+            if (range == null || range.size() < requested) {
+                exhausted = true;
+            }
+            List<ZSetOperations.TypedTuple<String>> fresh = new ArrayList<>(count);
+            if (range == null) return fresh;
+            for (ZSetOperations.TypedTuple<String> entry : range) {
+                if (fresh.size() >= count) break;
+                double entryScore = entry.getScore() == null ? 0 : entry.getScore();
+                if (entryScore == score && seenAtScore.contains(entry.getValue())) continue;
+                if (entryScore != score) {
+                    score = entryScore;
+                    seenAtScore.clear();
+                }
+                seenAtScore.add(entry.getValue());
+                fresh.add(entry);
+            }
+            return fresh;
+        }
+    }
+}
@@ -7,5 +7,7 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface MatchRepository extends MongoRepository<Match, String> {
     java.util.List<Match> findByStatus(String status);
-    long countByDriverIdAndStatus(String driverId, String status);
+
+    java.util.List<Match> findByStatusAndConfirmingSinceLessThan(String status, long confirmingSince,
+                                                                org.springframework.data.domain.Pageable page);
 }
@@ -0,0 +1,33 @@
+package com.lastmile.matching.shard;
+
+import io.grpc.*;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Marks calls that another shard forwarded here, so they are served locally even if this
+ * replica's view of the ring disagrees for a moment. Prevents forwarding loops.
+ */
+@GrpcGlobalServerInterceptor
+@Component
+public class ShardForwardingInterceptor implements ServerInterceptor {
+
+    public static final Metadata.Key<String> FORWARDED_HEADER =
+        Metadata.Key.of("x-lastmile-forwarded", Metadata.ASCII_STRING_MARSHALLER);
+    private static final Context.Key<Boolean> FORWARDED_KEY = Context.key("forwarded");
+
+    public static boolean isForwarded() {
+        return Boolean.TRUE.equals(FORWARDED_KEY.get());
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                Metadata headers,
+                                                                ServerCallHandler<ReqT, RespT> next) {
+        if (headers.get(FORWARDED_HEADER) == null) {
+            return next.startCall(call, headers);
+        }
+        Context ctx = Context.current().withValue(FORWARDED_KEY, true);
+        return Contexts.interceptCall(ctx, call, headers, next);
+    }
+}
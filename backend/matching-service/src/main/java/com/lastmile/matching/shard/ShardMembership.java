@@ -0,0 +1,117 @@
+package com.lastmile.matching.shard;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.util.*;
+
+/**
+ * Which matching-service replica owns which stations.
+ *
+ * Ownership only routes new match requests: matchRiderWithDriver forwards a request to the
+ * replica owning its pickup station, so the station's requests meet one driver index and
+ * one batch window. Driver events, declines, timeouts and batch runs are served by whichever
+ * replica receives them; station queues, the seat ledger and match transitions are shared
+ * in Redis and Mongo and compare-and-set, so that stays correct across replicas.
+ *
+ * Every replica heartbeats its gRPC address into the {@code matching:shards} sorted set
+ * (scored by last-seen time) and rebuilds the {@link ConsistentHashRing} from the members
+ * seen recently. Replicas that stop heartbeating drop out after {@link #MEMBER_TTL_MS} and
+ * their stations move to the remaining replicas; a new replica takes its share on its first
+ * heartbeat.
+ *
+ * With sharding disabled every replica owns every station, which is the old behaviour.
+ */
+@Component
+public class ShardMembership {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardMembership.class);
+
+    private static final String MEMBERS_KEY = "matching:shards";
+    static final long HEARTBEAT_MS = 2000;
+    static final long MEMBER_TTL_MS = 10000;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Value("${matching.sharding.enabled:false}")
+    private boolean enabled;
+
+    @Value("${matching.sharding.virtual-nodes:128}")
+    private int virtualNodes;
+
+    @Value("${matching.sharding.advertise-host:}")
+    private String advertiseHost;
+
+    @Value("${grpc.server.port:50056}")
+    private int grpcPort;
+
+    private String self;
+    private volatile ConsistentHashRing ring = new ConsistentHashRing(Collections.emptySet(), 1);
+
+    @jakarta.annotation.PostConstruct
+    public void init() {
+        if (!enabled) return;
+        self = resolveHost() + ":" + grpcPort;
+        heartbeat();
+        log.info("Sharding enabled - this replica is {}, {} members", self, ring.members().size());
+    }
+
+    @jakarta.annotation.PreDestroy
+    public void leave() {
+        if (!enabled) return;
+        // Hand our stations over now rather than after the TTL
+        redisTemplate.opsForZSet().remove(MEMBERS_KEY, self);
+    }
+
+    @Scheduled(fixedRate = HEARTBEAT_MS)
+    public void heartbeat() {
+        if (!enabled) return;
+        try {
+            long now = System.currentTimeMillis();
+            redisTemplate.opsForZSet().add(MEMBERS_KEY, self, now);
+            redisTemplate.opsForZSet().removeRangeByScore(MEMBERS_KEY, 0, now - MEMBER_TTL_MS);
+
+            Set<String> live = redisTemplate.opsForZSet().rangeByScore(MEMBERS_KEY, now - MEMBER_TTL_MS, Double.MAX_VALUE);
+            Set<String> members = new TreeSet<>(live != null ? live : Collections.emptySet());
+            members.add(self);
+            if (!members.equals(ring.members())) {
+                log.info("Shard membership changed: {} -> {}", ring.members(), members);
+                ring = new ConsistentHashRing(members, virtualNodes);
+            }
+        } catch (Exception e) {
+            // Keep the last ring; a Redis blip should not reshuffle stations
+            log.error("Shard heartbeat failed", e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Address of the replica owning the station, or null when it is this one. */
+    public String ownerOf(String station) {
+        if (!enabled) return null;
+        String owner = ring.owner(station);
+        return owner == null || owner.equals(self) ? null : owner;
+    }
+
+    public Set<String> members() {
+        return ring.members();
+    }
+
+    private String resolveHost() {
+        if (advertiseHost != null && !advertiseHost.isEmpty()) return advertiseHost;
+        try {
+            return InetAddress.getLocalHost().getHostAddress();
+        } catch (Exception e) {
+            return "localhost";
+        }
+    }
+}
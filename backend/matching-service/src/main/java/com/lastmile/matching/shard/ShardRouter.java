@@ -0,0 +1,44 @@
+package com.lastmile.matching.shard;
+
+import com.lastmile.matching.proto.MatchingServiceGrpc;
+import io.grpc.Channel;
+import io.grpc.Metadata;
+import io.grpc.stub.MetadataUtils;
+import net.devh.boot.grpc.client.channelfactory.GrpcChannelFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stubs for forwarding a match request to the replica that owns its pickup station.
+ *
+ * Channels come from the grpc-client channel factory, named {@code static://<peer>}, so they
+ * take the {@code grpc.client.GLOBAL} settings (negotiation, keep-alive, global client
+ * interceptors) like every other client here. The factory caches one channel per peer and
+ * closes them on shutdown; a departed peer's channel just goes idle.
+ */
+@Component
+public class ShardRouter {
+
+    private static final long FORWARD_DEADLINE_MS = 5000;
+
+    @Autowired
+    private GrpcChannelFactory channelFactory;
+
+    /**
+     * Stub for the given peer, carrying the caller's token and the forwarding marker.
+     */
+    public MatchingServiceGrpc.MatchingServiceBlockingStub stubFor(String peer, String token) {
+        Channel channel = channelFactory.createChannel("static://" + peer);
+
+        Metadata headers = new Metadata();
+        if (token != null && !token.isEmpty()) {
+            headers.put(Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER), "Bearer " + token);
+        }
+        headers.put(ShardForwardingInterceptor.FORWARDED_HEADER, "1");
+        return MatchingServiceGrpc.newBlockingStub(channel)
+            .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers))
+            .withDeadlineAfter(FORWARD_DEADLINE_MS, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,107 @@
+package com.lastmile.matching.engine;
+
+import com.lastmile.driver.proto.DriverInfo;
+import com.lastmile.driver.proto.Location;
+import com.lastmile.matching.model.Match;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchAssignmentPlannerTest {
+
+    private final BatchAssignmentPlanner planner = new BatchAssignmentPlanner();
+
+    private static final double[] STATION = { 12.9716, 77.5946 };
+
+    @Test
+    void testHungarian_BeatsFirstFit() {
+        // First-fit would take row 0 -> col 0 and leave row 1 with cost 10
+        double[][] cost = {
+            { 1, 2 },
+            { 1, 10 }
+        };
+
+        int[] assignment = HungarianSolver.solve(cost);
+
+        assertArrayEquals(new int[] { 1, 0 }, assignment);
+    }
+
+    @Test
+    void testHungarian_MoreRowsThanColumns() {
+        double[][] cost = {
+            { 5 },
+            { 1 },
+            { 3 }
+        };
+
+        int[] assignment = HungarianSolver.solve(cost);
+
+        assertArrayEquals(new int[] { -1, 0, -1 }, assignment);
+    }
+
+    @Test
+    void testPlan_NearestCompatibleDriverWins() {
+        DriverInfo near = driver("near", "Indiranagar", 2, 12.972, 77.595);
+        DriverInfo far = driver("far", "Indiranagar", 2, 13.05, 77.70);
+
+        List<BatchAssignmentPlanner.Assignment> result = planner.plan(
+            List.of(match("m1", "Indiranagar")), List.of(far, near),
+            id -> 2, STATION, String::equalsIgnoreCase);
+
+        assertEquals(1, result.size());
+        assertEquals("near", result.get(0).driver().getDriverId());
+    }
+
+    @Test
+    void testPlan_RespectsSeatsAndDestinations() {
+        DriverInfo oneSeat = driver("d1", "Whitefield", 1, 12.972, 77.595);
+        DriverInfo other = driver("d2", "Koramangala", 3, 12.972, 77.595);
+        Map<String, Integer> seats = Map.of("d1", 1, "d2", 3);
+
+        List<BatchAssignmentPlanner.Assignment> result = planner.plan(
+            List.of(match("m1", "Whitefield"), match("m2", "Whitefield"), match("m3", "Koramangala")),
+            List.of(oneSeat, other), seats::get, STATION, String::equalsIgnoreCase);
+
+        Map<String, String> byMatch = new HashMap<>();
+        for (BatchAssignmentPlanner.Assignment a : result) {
+            byMatch.put(a.match().getMatchId(), a.driver().getDriverId());
+        }
+        assertEquals(2, byMatch.size());
+        assertEquals("d2", byMatch.get("m3"));
+        assertEquals(1, Collections.frequency(byMatch.values(), "d1"));
+    }
+
+    @Test
+    void testPlan_TopsUpFullerCarFirst() {
+        DriverInfo emptyCar = driver("empty", "Hebbal", 4, 12.972, 77.595);
+        DriverInfo almostFull = driver("almostFull", "Hebbal", 1, 12.972, 77.595);
+        Map<String, Integer> seats = Map.of("empty", 4, "almostFull", 1);
+
+        List<BatchAssignmentPlanner.Assignment> result = planner.plan(
+            List.of(match("m1", "Hebbal")), List.of(emptyCar, almostFull),
+            seats::get, STATION, String::equalsIgnoreCase);
+
+        assertEquals("almostFull", result.get(0).driver().getDriverId());
+    }
+
+    private static DriverInfo driver(String id, String destination, int seats, double lat, double lon) {
+        return DriverInfo.newBuilder()
+            .setDriverId(id)
+            .setDestination(destination)
+            .setAvailableSeats(seats)
+            .addMetroStations("MG Road")
+            .setCurrentLocation(Location.newBuilder().setLatitude(lat).setLongitude(lon).build())
+            .build();
+    }
+
+    private static Match match(String id, String destination) {
+        Match match = new Match();
+        match.setMatchId(id);
+        match.setPickupStation("MG Road");
+        match.setDestination(destination);
+        match.setStatus("PENDING");
+        return match;
+    }
+}
@@ -0,0 +1,87 @@
+package com.lastmile.matching.engine;
+
+import com.lastmile.driver.proto.DriverInfo;
+import com.lastmile.matching.index.DestinationCanonicalizer;
+import com.lastmile.matching.model.Match;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PendingMatchSelectorTest {
+
+    private static final Set<String> WHITEFIELD = DestinationCanonicalizer.tokens("Whitefield");
+
+    @Test
+    void testScan_ReachesRequestBehindFullPages() {
+        // 150 older requests going elsewhere, then the only one the driver can take
+        List<List<Match>> pages = new ArrayList<>();
+        for (int page = 0; page < 3; page++) {
+            List<Match> matches = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                matches.add(match("m" + (page * 50 + i), "Koramangala"));
+            }
+            pages.add(matches);
+        }
+        pages.add(List.of(match("late", "Whitefield")));
+        List<String> assigned = new ArrayList<>();
+
+        int count = PendingMatchSelector.scan(pages.iterator(), driver(), WHITEFIELD, 2,
+            match -> assigned.add(match.getMatchId()));
+
+        assertEquals(1, count);
+        assertEquals(List.of("late"), assigned);
+    }
+
+    @Test
+    void testScan_StopsOnceSeatsAreFilled() {
+        Iterator<List<Match>> pages = List.of(
+            List.of(match("m1", "Whitefield"), match("m2", "Whitefield")),
+            List.<Match>of(),
+            List.of(match("m3", "Whitefield"), match("m4", "Whitefield")),
+            List.of(match("m5", "Whitefield"))
+        ).iterator();
+        List<String> assigned = new ArrayList<>();
+
+        int count = PendingMatchSelector.scan(pages, driver(), WHITEFIELD, 3,
+            match -> assigned.add(match.getMatchId()));
+
+        assertEquals(3, count);
+        assertEquals(List.of("m1", "m2", "m3"), assigned);
+        assertTrue(pages.hasNext());
+    }
+
+    @Test
+    void testScan_StopsWhenLedgerHasNoSeat() {
+        Iterator<List<Match>> pages = List.of(
+            List.of(match("m1", "Whitefield"), match("m2", "Whitefield")),
+            List.of(match("m3", "Whitefield"))
+        ).iterator();
+        List<String> tried = new ArrayList<>();
+
+        int count = PendingMatchSelector.scan(pages, driver(), WHITEFIELD, 3,
+            match -> tried.add(match.getMatchId()) && tried.size() < 2);
+
+        assertEquals(1, count);
+        assertEquals(List.of("m1", "m2"), tried);
+    }
+
+    private static DriverInfo driver() {
+        return DriverInfo.newBuilder()
+            .setDriverId("d1")
+            .setDestination("Whitefield")
+            .setAvailableSeats(3)
+            .addMetroStations("MG Road")
+            .build();
+    }
+
+    private static Match match(String id, String destination) {
+        Match match = new Match();
+        match.setMatchId(id);
+        match.setPickupStation("MG Road");
+        match.setDestination(destination);
+        match.setStatus("PENDING");
+        return match;
+    }
+}
@@ -0,0 +1,76 @@
+package com.lastmile.matching.index;
+
+import com.lastmile.driver.proto.DriverInfo;
+import com.lastmile.driver.proto.Location;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DestinationCanonicalizerTest {
+
+    @Test
+    void testTokens_NormalisesCasePunctuationAndGenericWords() {
+        Set<String> tokens = DestinationCanonicalizer.tokens("  Koramangala 5th Block, near Forum Mall! ");
+
+        assertEquals(Set.of("koramangala", "5th", "block", "forum", "mall"), tokens);
+    }
+
+    @Test
+    void testTokens_OnlyGenericWordsKeepsPhrase() {
+        assertEquals(Set.of("main road"), DestinationCanonicalizer.tokens("Main Road"));
+        assertTrue(DestinationCanonicalizer.tokens("  ,, ").isEmpty());
+        assertTrue(DestinationCanonicalizer.tokens(null).isEmpty());
+    }
+
+    @Test
+    void testMatches_EitherSideMoreSpecific() {
+        assertTrue(DestinationCanonicalizer.matches("Koramangala", "koramangala 5th block"));
+        assertTrue(DestinationCanonicalizer.matches("Whitefield, ITPL", "whitefield"));
+        assertTrue(DestinationCanonicalizer.matches("Indiranagar Metro Station", "Indiranagar"));
+    }
+
+    @Test
+    void testMatches_ShortOrGenericStringsDoNotMatchEverything() {
+        // The old substring check matched both of these
+        assertFalse(DestinationCanonicalizer.matches("MG Road", "Rd"));
+        assertFalse(DestinationCanonicalizer.matches("Hebbal", "e"));
+        assertFalse(DestinationCanonicalizer.matches("Koramangala 6th Block", "Koramangala 5th Block"));
+    }
+
+    @Test
+    void testIndexCandidates_ProbesByToken() {
+        DriverAvailabilityIndex index = new DriverAvailabilityIndex();
+        long now = System.currentTimeMillis();
+        index.update(driver("d1", "Koramangala", "ST1", now));
+        index.update(driver("d2", "Whitefield", "ST1", now));
+        index.update(driver("d3", "Koramangala 5th Block", "ST2", now));
+
+        List<DriverInfo> candidates = index.candidates("ST1", DestinationCanonicalizer.tokens("koramangala 5th block"), now);
+
+        assertEquals(1, candidates.size());
+        assertEquals("d1", candidates.get(0).getDriverId());
+    }
+
+    @Test
+    void testIndexCandidates_FollowsDestinationChange() {
+        DriverAvailabilityIndex index = new DriverAvailabilityIndex();
+        long now = System.currentTimeMillis();
+        index.update(driver("d1", "Koramangala", "ST1", now));
+        index.update(driver("d1", "Whitefield", "ST1", now));
+
+        assertTrue(index.candidates("ST1", DestinationCanonicalizer.tokens("Koramangala"), now).isEmpty());
+        assertEquals(1, index.candidates("ST1", DestinationCanonicalizer.tokens("Whitefield"), now).size());
+    }
+
+    private static DriverInfo driver(String id, String destination, String station, long now) {
+        return DriverInfo.newBuilder()
+            .setDriverId(id)
+            .setDestination(destination)
+            .setAvailableSeats(2)
+            .addMetroStations(station)
+            .setCurrentLocation(Location.newBuilder().setLatitude(12.97).setLongitude(77.59).setTimestamp(now))
+            .build();
+    }
+}
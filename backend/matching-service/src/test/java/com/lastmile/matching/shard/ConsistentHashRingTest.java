@@ -0,0 +1,83 @@
+package com.lastmile.matching.shard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConsistentHashRingTest {
+
+    private static final List<String> STATIONS = new ArrayList<>();
+
+    static {
+        for (int i = 1; i <= 200; i++) {
+            STATIONS.add("ST" + i);
+        }
+    }
+
+    @Test
+    void testOwner_SameMembersSameOwners() {
+        // Two replicas building their own ring from the same member list must agree
+        ConsistentHashRing a = new ConsistentHashRing(List.of("10.0.0.1:50056", "10.0.0.2:50056", "10.0.0.3:50056"), 128);
+        ConsistentHashRing b = new ConsistentHashRing(List.of("10.0.0.3:50056", "10.0.0.1:50056", "10.0.0.2:50056"), 128);
+
+        for (String station : STATIONS) {
+            assertEquals(a.owner(station), b.owner(station));
+        }
+    }
+
+    @Test
+    void testOwner_SpreadsStationsAcrossMembers() {
+        List<String> members = List.of("10.0.0.1:50056", "10.0.0.2:50056", "10.0.0.3:50056");
+        ConsistentHashRing ring = new ConsistentHashRing(members, 128);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (String station : STATIONS) {
+            counts.merge(ring.owner(station), 1, Integer::sum);
+        }
+
+        assertEquals(3, counts.size());
+        for (int count : counts.values()) {
+            assertTrue(count > 30, "Uneven split: " + counts);
+        }
+    }
+
+    @Test
+    void testOwner_JoinOnlyMovesStationsToNewMember() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("10.0.0.1:50056", "10.0.0.2:50056"), 128);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("10.0.0.1:50056", "10.0.0.2:50056", "10.0.0.3:50056"), 128);
+
+        int moved = 0;
+        for (String station : STATIONS) {
+            String oldOwner = before.owner(station);
+            String newOwner = after.owner(station);
+            if (!oldOwner.equals(newOwner)) {
+                assertEquals("10.0.0.3:50056", newOwner);
+                moved++;
+            }
+        }
+        assertTrue(moved > 0 && moved < STATIONS.size() / 2, "Moved " + moved);
+    }
+
+    @Test
+    void testOwner_LeaveOnlyMovesDepartedStations() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("10.0.0.1:50056", "10.0.0.2:50056", "10.0.0.3:50056"), 128);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("10.0.0.1:50056", "10.0.0.3:50056"), 128);
+
+        for (String station : STATIONS) {
+            String oldOwner = before.owner(station);
+            if (!oldOwner.equals("10.0.0.2:50056")) {
+                assertEquals(oldOwner, after.owner(station));
+            }
+        }
+    }
+
+    @Test
+    void testOwner_EmptyRing() {
+        ConsistentHashRing ring = new ConsistentHashRing(Collections.emptyList(), 128);
+
+        assertTrue(ring.isEmpty());
+        assertNull(ring.owner("ST1"));
+    }
+}
@@ -6,6 +6,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.Set;
+
 @GrpcGlobalServerInterceptor
 @Component
 public class AuthInterceptor implements ServerInterceptor {
@@ -13,6 +15,13 @@ public class AuthInterceptor implements ServerInterceptor {
     private static final Metadata.Key<String> AUTH_KEY = Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER);
     public static final Context.Key<String> USER_ID_KEY = Context.key("userId");
     public static final Context.Key<String> AUTH_TOKEN_KEY = Context.key("authToken");
+    // Set instead of USER_ID_KEY when another service calls with its own credential
+    public static final Context.Key<String> SERVICE_KEY = Context.key("service");
+
+    // The only methods a service credential (service-token:<token>) is accepted on
+    private static final Set<String> SERVICE_METHODS = Set.of(
+            "com.lastmile.rider.proto.RiderService/CancelRideRequest"
+    );
 
     @Autowired
     private RedisTemplate<String, String> redisTemplate;
@@ -35,6 +44,15 @@ public class AuthInterceptor implements ServerInterceptor {
         }
         String token = authHeader.substring(7).trim();
         String userId = redisTemplate.opsForValue().get("token:" + token);
+        if (userId == null && SERVICE_METHODS.contains(call.getMethodDescriptor().getFullMethodName())) {
+            String service = redisTemplate.opsForValue().get("service-token:" + token);
+            if (service != null) {
+                Context ctx = Context.current()
+                    .withValue(SERVICE_KEY, service)
+                    .withValue(AUTH_TOKEN_KEY, token);
+                return Contexts.interceptCall(ctx, call, headers, next);
+            }
+        }
         if (userId == null) {
             call.close(Status.UNAUTHENTICATED.withDescription("Invalid or expired token"), new Metadata());
             return new ServerCall.Listener<ReqT>() {};
@@ -40,6 +40,8 @@ public class StationGrpcService extends StationServiceGrpc.StationServiceImplBas
     
     private static final double SEARCH_RADIUS_KM = 3.0;
 
+    private static final String STATION_EVENTS_CHANNEL = "station-events";
+
     // =======================================================================
     // INIT: Data Migration / Setup
     // =======================================================================
@@ -82,6 +84,9 @@ public class StationGrpcService extends StationServiceGrpc.StationServiceImplBas
             }
         }
         System.out.println("Geo Data Initialization Complete.");
+
+        // Services caching station coordinates (e.g. matching-service fares) reload on this
+        redisTemplate.convertAndSend(STATION_EVENTS_CHANNEL, "STATIONS_UPDATED");
     }
 
     // =======================================================================
@@ -0,0 +1,46 @@
+package com.lastmile.trip.events;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.lastmile.events.proto.*;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes and decodes the protobuf payloads of the inter-service Redis channels this
+ * service uses (see events.proto). Decoders read straight from the message body bytes and return null for a
+ * payload that does not parse, so a listener can skip it.
+ */
+public final class EventCodec {
+
+    private EventCodec() {
+    }
+
+    /** For the trip-updates channel. */
+    public static byte[] tripUpdate(String tripId, String status) {
+        return TripUpdateEvent.newBuilder().setTripId(tripId).setStatus(status).build().toByteArray();
+    }
+
+    /** For the driver-dashboard channel. */
+    public static byte[] dashboardTripUpdate(String tripId, String status) {
+        return DriverDashboardEvent.newBuilder()
+            .setTripUpdate(TripUpdateEvent.newBuilder().setTripId(tripId).setStatus(status))
+            .build()
+            .toByteArray();
+    }
+
+    public static TripUpdateEvent decodeTripUpdate(byte[] body) {
+        try {
+            return TripUpdateEvent.parseFrom(body);
+        } catch (InvalidProtocolBufferException e) {
+            return null;
+        }
+    }
+
+    /** Publishes an encoded payload as-is, bypassing the template's string serializers. */
+    public static void publish(RedisOperations<?, ?> redis, String channel, byte[] payload) {
+        byte[] channelBytes = channel.getBytes(StandardCharsets.UTF_8);
+        redis.execute((RedisCallback<Long>) connection -> connection.publish(channelBytes, payload));
+    }
+}
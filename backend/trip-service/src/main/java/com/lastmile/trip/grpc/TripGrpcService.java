@@ -1,5 +1,8 @@
 package com.lastmile.trip.grpc;
 
+import com.lastmile.events.proto.TripUpdateEvent;
+import com.lastmile.trip.events.ChannelMultiplexer;
+import com.lastmile.trip.events.EventCodec;
 import com.lastmile.trip.model.Trip;
 import com.lastmile.trip.proto.*;
 import com.lastmile.trip.repository.TripRepository;
@@ -30,7 +33,7 @@ public class TripGrpcService extends TripServiceGrpc.TripServiceImplBase {
     private org.springframework.data.redis.core.RedisTemplate<String, String> redisTemplate;
 
     @Autowired
-    private org.springframework.data.redis.listener.RedisMessageListenerContainer redisMessageListenerContainer;
+    private ChannelMultiplexer channels;
 
     @GrpcClient("rider-service")
     private RiderServiceGrpc.RiderServiceBlockingStub riderStub;
@@ -52,14 +55,12 @@ public class TripGrpcService extends TripServiceGrpc.TripServiceImplBase {
     private void publishTripUpdate(String tripId, String status, String driverId, String riderId) {
         // Publish to trip channel
         String tripChannel = "trip-updates:" + tripId;
-        String message = tripId + "," + status;
-        redisTemplate.convertAndSend(tripChannel, message);
+        EventCodec.publish(redisTemplate, tripChannel, EventCodec.tripUpdate(tripId, status));
 
         // Publish to driver dashboard
         if (driverId != null) {
             String driverChannel = "driver-dashboard:" + driverId;
-            String driverMessage = "TRIP_UPDATE," + tripId + "," + status;
-            redisTemplate.convertAndSend(driverChannel, driverMessage);
+            EventCodec.publish(redisTemplate, driverChannel, EventCodec.dashboardTripUpdate(tripId, status));
         }
     }
     
@@ -329,24 +330,19 @@ public class TripGrpcService extends TripServiceGrpc.TripServiceImplBase {
     public void monitorTripUpdates(MonitorTripUpdatesRequest request,
                                    StreamObserver<MonitorTripUpdatesResponse> responseObserver) {
         String tripId = request.getTripId();
-        String channel = "trip-updates:" + tripId;
         
         io.grpc.stub.ServerCallStreamObserver<MonitorTripUpdatesResponse> serverObserver = 
             (io.grpc.stub.ServerCallStreamObserver<MonitorTripUpdatesResponse>) responseObserver;
 
-        org.springframework.data.redis.connection.MessageListener listener = (message, pattern) -> {
-            String body = new String(message.getBody());
-            String[] parts = body.split(",");
-            if (parts.length >= 2) {
+        ChannelMultiplexer.Subscription subscription = channels.subscribe("trip-updates", tripId, body -> {
+            TripUpdateEvent event = EventCodec.decodeTripUpdate(body);
+            if (event != null && !event.getTripId().isEmpty()) {
                 try {
-                    String tId = parts[0];
-                    String statusStr = parts[1];
-                    
                     TripStatus status = TripStatus.SCHEDULED;
-                    try { status = TripStatus.valueOf(statusStr); } catch (Exception e) {}
+                    try { status = TripStatus.valueOf(event.getStatus()); } catch (Exception e) {}
 
                     MonitorTripUpdatesResponse response = MonitorTripUpdatesResponse.newBuilder()
-                            .setTripId(tId)
+                            .setTripId(event.getTripId())
                             .setStatus(status)
                             .setSuccess(true)
                             .build();
@@ -358,13 +354,9 @@ public class TripGrpcService extends TripServiceGrpc.TripServiceImplBase {
                     e.printStackTrace();
                 }
             }
-        };
-
-        redisMessageListenerContainer.addMessageListener(listener, new org.springframework.data.redis.listener.ChannelTopic(channel));
-
-        serverObserver.setOnCancelHandler(() -> {
-            redisMessageListenerContainer.removeMessageListener(listener);
         });
+
+        serverObserver.setOnCancelHandler(subscription::cancel);
     }
     
     private Trip.TripStatus convertStatus(com.lastmile.trip.proto.TripStatus status) {
@@ -215,9 +215,10 @@ export function DriverDashboard({ user }: DriverDashboardProps) {
         // but we can keep it for immediate feedback or toast notifications.
       }
 
-      // C. Handle Active Trips List Refresh (Primary Source of Truth)
+      // C. Handle Active Trips List (initial snapshot only; changes arrive as deltas)
+      const delta = response.getDelta();
       const activeTripsList = response.getActiveTripsList();
-      if (activeTripsList) {
+      if (activeTripsList && !matchRequest && !tripUpdate && !delta) {
         // console.log("DEBUG: Received active trips from stream:", activeTripsList.length);
         const active = activeTripsList.map((t: any) => ({
           id: t.getTripId(),
@@ -262,56 +263,60 @@ export function DriverDashboard({ user }: DriverDashboardProps) {
         });
       }
 
-      // D. Handle Driver Status Updates (Available Seats, Earnings, History) via Message Field
-      const msg = response.getMessage();
-      if (msg && msg.startsWith('{')) {
-        try {
-          const data = JSON.parse(msg);
-
-          // 1. Available Seats
-          if (data.availableSeats !== undefined) {
-            setActiveRoute((prev: any) => {
-              if (!prev) return { availableSeats: data.availableSeats };
-              if (prev.availableSeats === data.availableSeats) return prev;
-              return { ...prev, availableSeats: data.availableSeats };
-            });
-            setAvailableSeats(data.availableSeats);
-          }
-
-          // 2. Total Earnings
-          if (data.totalEarnings !== undefined) {
-            setTotalEarnings(data.totalEarnings);
-          }
-
-          // 3. Latest Trip History (for Dropoff)
-          if (data.latestTrip) {
-            const newHistoryItem = {
-              id: data.latestTrip.id,
-              date: data.latestTrip.date,
-              riderName: data.latestTrip.riderName,
-              destination: data.latestTrip.destination,
-              fare: data.latestTrip.fare,
-              rating: 0, // Pending
-              duration: 'Just now'
-            };
-            setRideHistory(prev => {
-              // Avoid duplicates
-              if (prev.some(h => h.id === newHistoryItem.id)) return prev;
-              return [newHistoryItem, ...prev];
-            });
-
-            // Trigger Rating Dialog if we just completed this trip
-            // We can infer this if the trip was recently in our active list
-            // But for now, let's rely on the user flow or just show it if we have a new history item
-            // Actually, handleDropoff sets selectedRiderForRating, so we just need to open the dialog
-            // We can do that here if we want, but handleDropoff already does it.
-            // However, handleDropoff might have cleared the trip from active list already?
-            // No, handleDropoff calls API, then stream updates.
-            // Let's keep the dialog opening in handleDropoff for now as it's UI interaction.
-          }
+      // D. Apply Incremental Dashboard Deltas (trip upsert/removal, seats, earnings, history)
+      if (delta) {
+        const t = delta.getTrip();
+        if (t) {
+          const trip = {
+            id: t.getTripId(),
+            riderId: t.getRiderId(),
+            riderName: t.getRiderName(),
+            riderRating: t.getRiderRating(),
+            pickupStation: t.getPickupStation(),
+            destination: t.getDestination(),
+            status: t.getStatus(),
+            pickupTime: t.getPickupTimestamp(),
+            fare: t.getFare(),
+          };
+          setTrips(prev => {
+            if (delta.getTripRemoved()) return prev.filter(p => p.id !== trip.id);
+            const index = prev.findIndex(p => p.id === trip.id);
+            if (index === -1) return [...prev, trip];
+            const next = [...prev];
+            next[index] = trip;
+            return next;
+          });
+        }
 
-        } catch (e) {
-          // console.error("Failed to parse message JSON", e);
+        // 1. Available Seats
+        const seats = delta.getAvailableSeats();
+        setActiveRoute((prev: any) => {
+          if (!prev) return { availableSeats: seats };
+          if (prev.availableSeats === seats) return prev;
+          return { ...prev, availableSeats: seats };
+        });
+        setAvailableSeats(seats);
+
+        // 2. Total Earnings
+        setTotalEarnings(delta.getTotalEarnings());
+
+        // 3. Completed Trip (for Dropoff)
+        const completed = delta.getCompletedTrip();
+        if (completed) {
+          const newHistoryItem = {
+            id: completed.getTripId(),
+            date: completed.getDate(),
+            riderName: completed.getRiderName(),
+            destination: completed.getDestination(),
+            fare: completed.getFare(),
+            rating: 0, // Pending
+            duration: 'Just now'
+          };
+          setRideHistory(prev => {
+            // Avoid duplicates
+            if (prev.some(h => h.id === newHistoryItem.id)) return prev;
+            return [newHistoryItem, ...prev];
+          });
         }
       }
     });